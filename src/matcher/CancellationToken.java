@@ -0,0 +1,43 @@
+package matcher;
+
+import java.time.Duration;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Cooperative cancellation flag for long running operations, optionally expiring after a wall-clock time budget.
+ */
+public final class CancellationToken implements BooleanSupplier {
+	public CancellationToken() {
+		this.deadline = 0;
+		this.hasDeadline = false;
+	}
+
+	/**
+	 * Create a token that cancels itself once budget has passed from now on.
+	 */
+	public CancellationToken(Duration budget) {
+		this.deadline = System.nanoTime() + budget.toNanos();
+		this.hasDeadline = true;
+	}
+
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled || isExpired();
+	}
+
+	public boolean isExpired() {
+		return hasDeadline && System.nanoTime() - deadline >= 0;
+	}
+
+	@Override
+	public boolean getAsBoolean() {
+		return isCancelled();
+	}
+
+	private final long deadline;
+	private final boolean hasDeadline;
+	private volatile boolean cancelled;
+}
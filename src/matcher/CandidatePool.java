@@ -0,0 +1,141 @@
+package matcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import matcher.type.ClassEnvironment;
+import matcher.type.ClassInstance;
+
+/**
+ * Unmatched real classes of both sides and matched real classes of side A, kept up to date through
+ * {@link #onMatchChange} to enumerate auto match candidates without scanning and filtering all classes for every pass.
+ *
+ * <p>The sets are dense arrays with a parallel obfuscation flag column. Matchable states change independently and
+ * are checked while enumerating. The pool gets built on first use and discarded by {@link #reset}.
+ */
+final class CandidatePool {
+	CandidatePool(ClassEnvironment env) {
+		this.env = env;
+	}
+
+	synchronized void reset() {
+		built = false;
+		unmatchedA.clear();
+		unmatchedB.clear();
+		matchedA.clear();
+	}
+
+	/**
+	 * Move cls to the set for its current match state, to be called after changing a class match.
+	 */
+	synchronized void onMatchChange(ClassInstance cls) {
+		if (!built || !cls.isReal()) return;
+
+		boolean isA = cls.getEnv() == env.getEnvA();
+		ClassSet unmatched = isA ? unmatchedA : unmatchedB;
+
+		if (cls.hasMatch()) {
+			unmatched.remove(cls);
+			if (isA) matchedA.add(cls);
+		} else {
+			if (isA) matchedA.remove(cls);
+			unmatched.add(cls);
+		}
+	}
+
+	/**
+	 * Get the unmatched matchable real classes of one side.
+	 */
+	synchronized ClassInstance[] getUnmatchedClasses(boolean sideA, boolean obfuscatedOnly) {
+		build();
+
+		ClassSet set = sideA ? unmatchedA : unmatchedB;
+		ClassInstance[] ret = new ClassInstance[set.size];
+		int size = 0;
+
+		for (int i = 0; i < set.size; i++) {
+			if (obfuscatedOnly && !set.obfuscated[i]) continue;
+
+			ClassInstance cls = set.classes[i];
+			if (cls.isMatchable()) ret[size++] = cls;
+		}
+
+		return size == ret.length ? ret : Arrays.copyOf(ret, size);
+	}
+
+	/**
+	 * Get the matched real classes of side A.
+	 */
+	synchronized List<ClassInstance> getMatchedClassesA() {
+		build();
+
+		return new ArrayList<>(Arrays.asList(matchedA.classes).subList(0, matchedA.size));
+	}
+
+	private void build() {
+		if (built) return;
+
+		for (ClassInstance cls : env.getClassesA()) {
+			if (cls.isReal()) (cls.hasMatch() ? matchedA : unmatchedA).add(cls);
+		}
+
+		for (ClassInstance cls : env.getClassesB()) {
+			if (cls.isReal() && !cls.hasMatch()) unmatchedB.add(cls);
+		}
+
+		built = true;
+	}
+
+	private static final class ClassSet {
+		void add(ClassInstance cls) {
+			if (indices.putIfAbsent(cls, size) != null) return;
+
+			if (size == classes.length) {
+				int newLength = Math.max(16, size * 2);
+				classes = Arrays.copyOf(classes, newLength);
+				obfuscated = Arrays.copyOf(obfuscated, newLength);
+			}
+
+			classes[size] = cls;
+			obfuscated[size] = cls.isNameObfuscated();
+			size++;
+		}
+
+		void remove(ClassInstance cls) {
+			Integer idx = indices.remove(cls);
+			if (idx == null) return;
+
+			// move the last entry into the gap
+
+			int last = --size;
+
+			if (idx != last) {
+				classes[idx] = classes[last];
+				obfuscated[idx] = obfuscated[last];
+				indices.put(classes[idx], idx);
+			}
+
+			classes[last] = null;
+		}
+
+		void clear() {
+			Arrays.fill(classes, 0, size, null);
+			indices.clear();
+			size = 0;
+		}
+
+		ClassInstance[] classes = new ClassInstance[0];
+		boolean[] obfuscated = new boolean[0];
+		int size;
+		final Map<ClassInstance, Integer> indices = new IdentityHashMap<>();
+	}
+
+	private final ClassEnvironment env;
+	private final ClassSet unmatchedA = new ClassSet();
+	private final ClassSet unmatchedB = new ClassSet();
+	private final ClassSet matchedA = new ClassSet();
+	private boolean built;
+}
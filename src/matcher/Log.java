@@ -0,0 +1,176 @@
+package matcher;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal level-gated logger.
+ *
+ * <p>Messages below the configured level are dropped before any formatting takes place, callers with expensive
+ * message construction (e.g. bytecode dumps) should additionally check {@link #isEnabled(Level)}. Enabled messages
+ * are formatted on the calling thread and written by a background thread unless async output is disabled.
+ *
+ * <p>Configured through the system properties {@code matcher.log.level} (trace, debug, info, warn, error, off),
+ * {@code matcher.log.async} (true/false) and {@code matcher.log.sampleRate} (only every n-th trace/debug message is
+ * emitted).
+ */
+public final class Log {
+	public enum Level {
+		TRACE, DEBUG, INFO, WARN, ERROR, OFF;
+	}
+
+	public static Level getLevel() {
+		return level;
+	}
+
+	public static void setLevel(Level level) {
+		if (level == null) throw new NullPointerException("null level");
+
+		Log.level = level;
+	}
+
+	public static boolean isEnabled(Level level) {
+		return level.compareTo(Log.level) >= 0 && level != Level.OFF;
+	}
+
+	public static void trace(String format, Object... args) {
+		log(Level.TRACE, format, args);
+	}
+
+	public static void debug(String format, Object... args) {
+		log(Level.DEBUG, format, args);
+	}
+
+	public static void info(String format, Object... args) {
+		log(Level.INFO, format, args);
+	}
+
+	public static void warn(String format, Object... args) {
+		log(Level.WARN, format, args);
+	}
+
+	public static void error(String format, Object... args) {
+		log(Level.ERROR, format, args);
+	}
+
+	public static void error(String msg, Throwable t) {
+		if (!isEnabled(Level.ERROR)) return;
+
+		synchronized (Log.class) {
+			flush();
+			System.err.println(msg);
+			t.printStackTrace();
+		}
+	}
+
+	public static void log(Level level, String format, Object... args) {
+		if (!isEnabled(level)) return;
+
+		if (sampleRate > 1 && level.compareTo(Level.DEBUG) <= 0
+				&& sampleCounter.getAndIncrement() % sampleRate != 0) {
+			return;
+		}
+
+		String msg = args.length == 0 ? format : String.format(Locale.ENGLISH, format, args);
+
+		if (pending != null) {
+			synchronized (pending) {
+				pending.add(new Entry(level, msg));
+				if (pending.size() == 1) pending.notify();
+			}
+		} else {
+			write(level, msg);
+		}
+	}
+
+	/**
+	 * Block until all queued messages have been written.
+	 */
+	public static void flush() {
+		if (pending == null) return;
+
+		synchronized (Log.class) { // the pending queue is only drained while holding the write lock to retain ordering
+			Entry[] entries;
+
+			synchronized (pending) {
+				if (pending.isEmpty()) return;
+
+				entries = pending.toArray(new Entry[0]);
+				pending.clear();
+			}
+
+			for (Entry entry : entries) {
+				write(entry.level, entry.msg);
+			}
+		}
+	}
+
+	private static void write(Level level, String msg) {
+		PrintStream ps = level.compareTo(Level.WARN) >= 0 ? System.err : System.out;
+
+		synchronized (Log.class) {
+			ps.println(msg);
+		}
+	}
+
+	private static void runWriter() {
+		for (;;) {
+			synchronized (pending) {
+				while (pending.isEmpty()) {
+					try {
+						pending.wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+			}
+
+			flush();
+		}
+	}
+
+	private static Level parseLevel(String value) {
+		if (value == null) return Level.INFO;
+
+		try {
+			return Level.valueOf(value.toUpperCase(Locale.ENGLISH));
+		} catch (IllegalArgumentException e) {
+			System.err.println("invalid log level: "+value);
+			return Level.INFO;
+		}
+	}
+
+	private static class Entry {
+		Entry(Level level, String msg) {
+			this.level = level;
+			this.msg = msg;
+		}
+
+		final Level level;
+		final String msg;
+	}
+
+	private Log() { }
+
+	private static volatile Level level = parseLevel(System.getProperty("matcher.log.level"));
+	private static final int sampleRate = Integer.getInteger("matcher.log.sampleRate", 1);
+	private static final AtomicLong sampleCounter = new AtomicLong();
+	private static final List<Entry> pending;
+
+	static {
+		if (Boolean.parseBoolean(System.getProperty("matcher.log.async", "true"))) {
+			pending = new ArrayList<>();
+
+			Thread writer = new Thread(Log::runWriter, "Matcher log writer");
+			writer.setDaemon(true);
+			writer.start();
+
+			Runtime.getRuntime().addShutdownHook(new Thread(Log::flush, "Matcher log flush"));
+		} else {
+			pending = null;
+		}
+	}
+}
@@ -1,13 +1,102 @@
 package matcher;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleConsumer;
+
 import javafx.application.Application;
+import matcher.config.AutoMatchStage;
 import matcher.config.Config;
+import matcher.config.ProjectConfig;
 import matcher.gui.Gui;
+import matcher.serdes.MatchesIo;
+import matcher.type.ClassEnvironment;
 
 public class Main {
 	public static void main(String[] args) {
 		Config.init();
 		PluginLoader.run();
-		Application.launch(Gui.class, args);
+
+		if (args.length > 0 && args[0].equals(autoMatchArg)) {
+			try {
+				runAutoMatch(args);
+			} catch (IllegalArgumentException e) {
+				System.err.println(e.getMessage());
+				System.err.println("usage: "+autoMatchArg+" <output> [--matches <input>] [--time-budget <seconds>] [--stage <stage>]...");
+				System.exit(2);
+			} catch (IOException e) {
+				Log.error("Auto matching failed", e);
+				System.exit(1);
+			} finally {
+				Log.flush();
+			}
+		} else {
+			Application.launch(Gui.class, args);
+		}
 	}
+
+	/**
+	 * Run auto matching without the GUI on the last project or the project of a matches file and save the result.
+	 *
+	 * <p>The pipeline is the project config's unless stages are passed explicitly.
+	 */
+	private static void runAutoMatch(String[] args) throws IOException {
+		if (args.length < 2) throw new IllegalArgumentException("missing output path");
+
+		Path output = Paths.get(args[1]);
+		Path matches = null;
+		Duration timeBudget = null;
+		List<AutoMatchStage> stages = new ArrayList<>();
+
+		for (int i = 2; i < args.length; i++) {
+			if (i + 1 >= args.length) throw new IllegalArgumentException("missing value for "+args[i]);
+
+			switch (args[i]) {
+			case "--matches":
+				matches = Paths.get(args[++i]);
+				break;
+			case "--time-budget":
+				timeBudget = Duration.ofSeconds(Long.parseLong(args[++i]));
+				break;
+			case "--stage":
+				stages.add(AutoMatchStage.parse(args[++i]));
+				break;
+			default:
+				throw new IllegalArgumentException("unknown argument: "+args[i]);
+			}
+		}
+
+		Matcher.init();
+		Matcher matcher = new Matcher(new ClassEnvironment());
+		DoubleConsumer progressReceiver = progress -> { };
+
+		if (matches != null) {
+			MatchesIo.read(matches, Config.getInputDirs(), Config.getVerifyInputFiles(), matcher, progressReceiver);
+		} else {
+			ProjectConfig config = Config.getProjectConfig();
+			if (!config.isValid()) throw new IllegalArgumentException("no valid project config");
+
+			matcher.init(config, progressReceiver);
+		}
+
+		CancellationToken cancelToken = timeBudget != null ? new CancellationToken(timeBudget) : new CancellationToken();
+		long startTime = System.nanoTime();
+
+		matcher.autoMatch(stages.isEmpty() ? matcher.getAutoMatchStages() : stages, progressReceiver, cancelToken);
+
+		Matcher.MatchingStatus status = matcher.getStatusA(true);
+		Log.info("Auto matching done in %.1f s: %d/%d classes, %d/%d methods, %d/%d fields matched",
+				(System.nanoTime() - startTime) * 1e-9,
+				status.matchedClassCount, status.totalClassCount,
+				status.matchedMethodCount, status.totalMethodCount,
+				status.matchedFieldCount, status.totalFieldCount);
+
+		if (!MatchesIo.write(matcher, output)) throw new IOException("no matches to save");
+	}
+
+	private static final String autoMatchArg = "--auto-match";
 }
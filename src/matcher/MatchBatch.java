@@ -0,0 +1,337 @@
+package matcher;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import matcher.type.ClassInstance;
+import matcher.type.FieldInstance;
+import matcher.type.MatchType;
+import matcher.type.Matchable;
+import matcher.type.MatchableKind;
+import matcher.type.MemberInstance;
+import matcher.type.MethodInstance;
+import matcher.type.MethodVarInstance;
+
+/**
+ * Set of match changes that are applied together.
+ *
+ * <p>Conflicting matches are discarded like in {@link Matcher#sanitizeMatches}, with the last match for a source
+ * element superseding earlier ones. Maps passed to {@link #matchAll} are expected to be conflict free already, they
+ * only get checked again if the batch holds further matches of the same element category. Classes are processed
+ * before members and members before method vars, each in insertion order, and the matcher cache is only invalidated
+ * once for the whole batch.
+ */
+public final class MatchBatch {
+	public MatchBatch(Matcher matcher) {
+		this.matcher = matcher;
+	}
+
+	public MatchBatch match(ClassInstance a, ClassInstance b) {
+		return add(OpType.MATCH, a, b);
+	}
+
+	public MatchBatch match(MethodInstance a, MethodInstance b) {
+		return add(OpType.MATCH, a, b);
+	}
+
+	public MatchBatch match(FieldInstance a, FieldInstance b) {
+		return add(OpType.MATCH, a, b);
+	}
+
+	public MatchBatch match(MethodVarInstance a, MethodVarInstance b) {
+		return add(OpType.MATCH, a, b);
+	}
+
+	/**
+	 * Queue the matches of a map that doesn't match multiple sources to the same target, see
+	 * {@link Matcher#sanitizeMatches}.
+	 */
+	public <T extends Matchable<T>> MatchBatch matchAll(Map<T, T> matches) {
+		int group = ++matchAllGroups;
+
+		for (Map.Entry<T, T> entry : matches.entrySet()) {
+			add(OpType.MATCH, entry.getKey(), entry.getValue(), group);
+		}
+
+		return this;
+	}
+
+	public MatchBatch unmatch(Matchable<?> m) {
+		return add(OpType.UNMATCH, m, null);
+	}
+
+	/**
+	 * Unmatch m if needed and mark it as unmatchable.
+	 */
+	public MatchBatch setUnmatchable(Matchable<?> m) {
+		return add(OpType.UNMATCHABLE, m, null);
+	}
+
+	public boolean isEmpty() {
+		return classOps.isEmpty() && memberOps.isEmpty() && varOps.isEmpty();
+	}
+
+	public int size() {
+		return classOps.size() + memberOps.size() + varOps.size();
+	}
+
+	private MatchBatch add(OpType type, Matchable<?> a, Matchable<?> b) {
+		return add(type, a, b, 0);
+	}
+
+	private MatchBatch add(OpType type, Matchable<?> a, Matchable<?> b, int group) {
+		if (applied) throw new IllegalStateException("batch already applied");
+		if (a == null) throw new NullPointerException("null element A");
+		if (type == OpType.MATCH && b == null) throw new NullPointerException("null element B");
+		if (b != null && a.getKind() != b.getKind()) throw new IllegalArgumentException("the elements are not of the same kind: "+a+", "+b);
+
+		Op op = new Op(type, a, b, group);
+
+		switch (a.getKind()) {
+		case CLASS:
+			classOps.add(op);
+			break;
+		case METHOD:
+		case FIELD:
+			memberOps.add(op);
+			break;
+		case METHOD_ARG:
+		case METHOD_VAR:
+			varOps.add(op);
+			break;
+		}
+
+		return this;
+	}
+
+	/**
+	 * Apply all queued changes, a batch can only be applied once.
+	 *
+	 * @return match types affected by the applied changes, suitable for Gui.onMatchChange
+	 */
+	public Set<MatchType> apply() {
+		if (applied) throw new IllegalStateException("batch already applied");
+		applied = true;
+
+		Set<MatchType> ret = EnumSet.noneOf(MatchType.class);
+
+		matcher.beginBulk();
+
+		try {
+			apply(classOps, ret);
+			apply(memberOps, ret);
+			apply(varOps, ret);
+		} finally {
+			matcher.endBulk();
+		}
+
+		if (conflicts > 0 || skipped > 0) {
+			Log.warn("Match batch: %d changes applied, %d conflicting matches discarded, %d entries skipped", changed, conflicts, skipped);
+		} else {
+			Log.debug("Match batch: %d changes applied", changed);
+		}
+
+		return ret;
+	}
+
+	private void apply(List<Op> ops, Set<MatchType> changedTypes) {
+		removeConflicts(ops);
+
+		for (Op op : ops) {
+			if (apply(op)) {
+				changed++;
+				addMatchTypes(op.a, changedTypes);
+			}
+		}
+	}
+
+	private void removeConflicts(List<Op> ops) {
+		int group = -1;
+
+		for (Op op : ops) {
+			if (op.type != OpType.MATCH) continue;
+
+			if (group < 0) {
+				group = op.group;
+			} else if (op.group != group) {
+				group = 0;
+				break;
+			}
+		}
+
+		if (group != 0) return; // no matches or all from a single sanitized map
+
+		Map<Matchable<?>, Op> lastOps = new IdentityHashMap<>();
+
+		for (Op op : ops) {
+			if (op.type == OpType.MATCH) lastOps.put(op.a, op);
+		}
+
+		if (lastOps.isEmpty()) return;
+
+		Map<Matchable<?>, Matchable<?>> matches = new IdentityHashMap<>(lastOps.size());
+
+		for (Op op : lastOps.values()) {
+			matches.put(op.a, op.b);
+		}
+
+		Matcher.sanitizeMatches(matches);
+		conflicts += lastOps.size() - matches.size();
+
+		ops.removeIf(op -> op.type == OpType.MATCH && (lastOps.get(op.a) != op || !matches.containsKey(op.a)));
+	}
+
+	private boolean apply(Op op) {
+		Matchable<?> a = op.a;
+
+		switch (op.type) {
+		case MATCH:
+			return applyMatch(a, op.b);
+		case UNMATCH:
+			if (!a.hasMatch()) return false;
+
+			applyUnmatch(a);
+
+			return true;
+		case UNMATCHABLE: {
+			boolean ret = a.hasMatch();
+			if (ret) applyUnmatch(a);
+
+			if (!a.isMatchable()) return ret;
+
+			if (!a.setMatchable(false)) {
+				Log.warn("can't mark %s as unmatchable, already matched?", a);
+				skipped++;
+				return ret;
+			}
+
+			matcher.invalidateCache(a);
+
+			return true;
+		}
+		}
+
+		throw new IllegalStateException(op.type.name());
+	}
+
+	private boolean applyMatch(Matchable<?> a, Matchable<?> b) {
+		if (a.getMatch() == b) return false;
+
+		if (!a.isMatchable() || !b.isMatchable()) {
+			Log.warn("Unmatchable a/b %s %s/%s", a.getKind().name().toLowerCase(Locale.ENGLISH), a, b);
+			skipped++;
+			return false;
+		}
+
+		switch (a.getKind()) {
+		case CLASS: {
+			ClassInstance clsA = (ClassInstance) a;
+			ClassInstance clsB = (ClassInstance) b;
+
+			if (clsA.getArrayDimensions() != clsB.getArrayDimensions()) {
+				Log.warn("Can't match classes %s/%s with different array dimensions", a, b);
+				skipped++;
+				return false;
+			}
+
+			matcher.match(clsA, clsB);
+			return true;
+		}
+		case METHOD:
+		case FIELD:
+			if (((MemberInstance<?>) a).getCls().getMatch() != ((MemberInstance<?>) b).getCls()) {
+				Log.warn("Can't match members %s/%s of unmatched classes", a, b);
+				skipped++;
+				return false;
+			}
+
+			if (a.getKind() == MatchableKind.METHOD) {
+				matcher.match((MethodInstance) a, (MethodInstance) b);
+			} else {
+				matcher.match((FieldInstance) a, (FieldInstance) b);
+			}
+
+			return true;
+		case METHOD_ARG:
+		case METHOD_VAR:
+			if (((MethodVarInstance) a).getMethod().getMatch() != ((MethodVarInstance) b).getMethod()) {
+				Log.warn("Can't match method vars %s/%s of unmatched methods", a, b);
+				skipped++;
+				return false;
+			}
+
+			matcher.match((MethodVarInstance) a, (MethodVarInstance) b);
+			return true;
+		}
+
+		throw new IllegalStateException(a.getKind().name());
+	}
+
+	private void applyUnmatch(Matchable<?> m) {
+		switch (m.getKind()) {
+		case CLASS:
+			matcher.unmatch((ClassInstance) m);
+			break;
+		case METHOD:
+		case FIELD:
+			matcher.unmatch((MemberInstance<?>) m);
+			break;
+		case METHOD_ARG:
+		case METHOD_VAR:
+			matcher.unmatch((MethodVarInstance) m);
+			break;
+		}
+	}
+
+	private static void addMatchTypes(Matchable<?> m, Set<MatchType> out) {
+		switch (m.getKind()) {
+		case CLASS: // class changes cascade into members and vars
+			out.addAll(EnumSet.allOf(MatchType.class));
+			break;
+		case METHOD:
+			out.add(MatchType.Method);
+			out.add(MatchType.MethodVar);
+			break;
+		case FIELD:
+			out.add(MatchType.Field);
+			break;
+		case METHOD_ARG:
+		case METHOD_VAR:
+			out.add(MatchType.MethodVar);
+			break;
+		}
+	}
+
+	private enum OpType {
+		MATCH, UNMATCH, UNMATCHABLE;
+	}
+
+	private static final class Op {
+		Op(OpType type, Matchable<?> a, Matchable<?> b, int group) {
+			this.type = type;
+			this.a = a;
+			this.b = b;
+			this.group = group;
+		}
+
+		final OpType type;
+		final Matchable<?> a;
+		final Matchable<?> b;
+		final int group; // matchAll call, 0 for individual ops
+	}
+
+	private final Matcher matcher;
+	private final List<Op> classOps = new ArrayList<>();
+	private final List<Op> memberOps = new ArrayList<>();
+	private final List<Op> varOps = new ArrayList<>();
+	private int matchAllGroups;
+	private boolean applied;
+	private int changed;
+	private int conflicts;
+	private int skipped;
+}
@@ -1,30 +1,28 @@
 package matcher;
 
 import java.io.IOException;
-import java.io.UncheckedIOException;
-import java.nio.file.FileVisitOption;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 import java.util.function.DoubleConsumer;
 import java.util.function.Function;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.function.ToLongFunction;
 
 import matcher.classifier.ClassClassifier;
 import matcher.classifier.ClassifierLevel;
@@ -33,13 +31,17 @@ import matcher.classifier.IRanker;
 import matcher.classifier.MethodClassifier;
 import matcher.classifier.MethodVarClassifier;
 import matcher.classifier.RankResult;
+import matcher.config.AutoMatchStage;
 import matcher.config.Config;
 import matcher.config.ProjectConfig;
 import matcher.type.ClassEnv;
 import matcher.type.ClassEnvironment;
 import matcher.type.ClassInstance;
 import matcher.type.FieldInstance;
+import matcher.type.FileHashCache;
+import matcher.type.InputDirIndex;
 import matcher.type.InputFile;
+import matcher.type.Matchable;
 import matcher.type.MemberInstance;
 import matcher.type.MethodInstance;
 import matcher.type.MethodVarInstance;
@@ -54,10 +56,13 @@ public class Matcher {
 
 	public Matcher(ClassEnvironment env) {
 		this.env = env;
+		this.candidatePool = new CandidatePool(env);
 	}
 
 	public void init(ProjectConfig config, DoubleConsumer progressReceiver) {
 		try {
+			candidatePool.reset();
+			autoMatchStages = config.getAutoMatchStages();
 			env.init(config, progressReceiver);
 
 			matchUnobfuscated();
@@ -81,6 +86,7 @@ public class Matcher {
 
 	public void reset() {
 		env.reset();
+		candidatePool.reset();
 	}
 
 	public ClassEnvironment getEnv() {
@@ -91,20 +97,47 @@ public class Matcher {
 		return autoMatchLevel;
 	}
 
+	public List<AutoMatchStage> getAutoMatchStages() {
+		return autoMatchStages;
+	}
+
+	/**
+	 * Set the pipeline run by {@link #autoMatchAll}, initialized from the project config.
+	 */
+	public void setAutoMatchStages(List<AutoMatchStage> stages) {
+		if (stages.isEmpty()) throw new IllegalArgumentException("empty auto match pipeline");
+
+		this.autoMatchStages = stages;
+	}
+
+	public boolean isGlobalMemberAssignment() {
+		return globalMemberAssignment;
+	}
+
+	/**
+	 * Set whether member auto matching assigns all unmatched members of a class pair together, maximizing the total
+	 * score, instead of discarding members competing for the same target.
+	 */
+	public void setGlobalMemberAssignment(boolean value) {
+		this.globalMemberAssignment = value;
+	}
+
 	public void initFromMatches(List<Path> inputDirs,
 			List<InputFile> inputFilesA, List<InputFile> inputFilesB,
 			List<InputFile> cpFiles,
 			List<InputFile> cpFilesA, List<InputFile> cpFilesB,
 			String nonObfuscatedClassPatternA, String nonObfuscatedClassPatternB, String nonObfuscatedMemberPatternA, String nonObfuscatedMemberPatternB,
 			DoubleConsumer progressReceiver) throws IOException {
-		List<Path> pathsA = resolvePaths(inputDirs, inputFilesA);
-		List<Path> pathsB = resolvePaths(inputDirs, inputFilesB);
-		List<Path> sharedClassPath = resolvePaths(inputDirs, cpFiles);
-		List<Path> classPathA = resolvePaths(inputDirs, cpFilesA);
-		List<Path> classPathB = resolvePaths(inputDirs, cpFilesB);
+		long lookupStart = System.nanoTime(); // shared to rebuild each index at most once
+		List<Path> pathsA = resolvePaths(inputDirs, inputFilesA, lookupStart);
+		List<Path> pathsB = resolvePaths(inputDirs, inputFilesB, lookupStart);
+		List<Path> sharedClassPath = resolvePaths(inputDirs, cpFiles, lookupStart);
+		List<Path> classPathA = resolvePaths(inputDirs, cpFilesA, lookupStart);
+		List<Path> classPathB = resolvePaths(inputDirs, cpFilesB, lookupStart);
 
 		ProjectConfig config = new ProjectConfig(pathsA, pathsB, classPathA, classPathB, sharedClassPath, false,
-				nonObfuscatedClassPatternA, nonObfuscatedClassPatternB, nonObfuscatedMemberPatternA, nonObfuscatedMemberPatternB);
+				nonObfuscatedClassPatternA, nonObfuscatedClassPatternB, nonObfuscatedMemberPatternA, nonObfuscatedMemberPatternB,
+				Config.getProjectConfig().getAutoMatchStages());
 		if (!config.isValid()) throw new IOException("invalid config");
 		Config.setProjectConfig(config);
 		Config.saveAsLast();
@@ -120,6 +153,15 @@ public class Matcher {
 	}
 
 	public static List<Path> resolvePaths(Collection<Path> inputDirs, Collection<InputFile> inputFiles) throws IOException {
+		return resolvePaths(inputDirs, inputFiles, System.nanoTime());
+	}
+
+	/**
+	 * Resolve inputFiles through their path hints or the session wide input dir indices.
+	 *
+	 * <p>Files missing from all indices cause each index to be rebuilt, unless it was already built after lookupStart.
+	 */
+	private static List<Path> resolvePaths(Collection<Path> inputDirs, Collection<InputFile> inputFiles, long lookupStart) throws IOException {
 		List<Path> ret = new ArrayList<>(inputFiles.size());
 
 		inputFileLoop: for (InputFile inputFile : inputFiles) {
@@ -142,21 +184,34 @@ public class Matcher {
 			}
 
 			for (Path inputDir : inputDirs) {
-				try (Stream<Path> matches = Files.find(inputDir, Integer.MAX_VALUE, (path, attr) -> inputFile.equals(path), FileVisitOption.FOLLOW_LINKS)) {
-					Path file = matches.findFirst().orElse(null);
+				Path file = InputDirIndex.get(inputDir).find(inputFile);
 
-					if (file != null) {
-						ret.add(file);
-						continue inputFileLoop;
-					}
-				} catch (UncheckedIOException e) {
-					throw e.getCause();
+				if (file != null) {
+					ret.add(file);
+					continue inputFileLoop;
+				}
+			}
+
+			// not indexed, the dirs may have changed since indexing
+
+			for (Path inputDir : inputDirs) {
+				InputDirIndex index = InputDirIndex.get(inputDir);
+				if (index.getBuildTime() - lookupStart >= 0) continue; // already up to date and searched above
+
+				index.refresh();
+				Path file = index.find(inputFile);
+
+				if (file != null) {
+					ret.add(file);
+					continue inputFileLoop;
 				}
 			}
 
 			throw new IOException("can't find input "+inputFile);
 		}
 
+		FileHashCache.save();
+
 		return ret;
 	}
 
@@ -166,20 +221,31 @@ public class Matcher {
 		if (a.getArrayDimensions() != b.getArrayDimensions()) throw new IllegalArgumentException("the classes don't have the same amount of array dimensions");
 		if (a.getMatch() == b) return;
 
-		System.out.println("match class "+a+" -> "+b+(a.hasMappedName() ? " ("+a.getName(NameType.MAPPED_PLAIN)+")" : ""));
+		if (Log.isEnabled(Log.Level.DEBUG)) Log.debug("match class %s -> %s%s", a, b, getMappedNameSuffix(a));
 
-		if (a.getMatch() != null) {
-			a.getMatch().setMatch(null);
+		ClassInstance prevMatchA = a.getMatch();
+		ClassInstance prevMatchB = b.getMatch();
+
+		if (prevMatchA != null) {
+			notifyMatchChange(prevMatchA);
+			prevMatchA.setMatch(null);
 			unmatchMembers(a);
+			candidatePool.onMatchChange(prevMatchA);
 		}
 
-		if (b.getMatch() != null) {
-			b.getMatch().setMatch(null);
+		if (prevMatchB != null) {
+			notifyMatchChange(prevMatchB);
+			prevMatchB.setMatch(null);
 			unmatchMembers(b);
+			candidatePool.onMatchChange(prevMatchB);
 		}
 
 		a.setMatch(b);
 		b.setMatch(a);
+		candidatePool.onMatchChange(a);
+		candidatePool.onMatchChange(b);
+		notifyMatchChange(a);
+		notifyMatchChange(b);
 
 		// match array classes
 
@@ -215,18 +281,14 @@ public class Matcher {
 			}
 
 			MethodInstance matchedDst = src.getHierarchyMatch();
-			if (matchedDst == null) continue;
+			if (matchedDst == null || matchedDst.getAllHierarchyMembers().size() <= 1) continue;
 
-			Set<MethodInstance> dstHierarchyMembers = matchedDst.getAllHierarchyMembers();
-			if (dstHierarchyMembers.size() <= 1) continue;
+			MethodInstance dst = b.getHierarchyMember(matchedDst);
 
-			for (MethodInstance dst : b.getMethods()) {
-				if (dstHierarchyMembers.contains(dst)) {
-					src.setMatchable(true);
-					dst.setMatchable(true);
-					match(src, dst);
-					break;
-				}
+			if (dst != null) {
+				src.setMatchable(true);
+				dst.setMatchable(true);
+				match(src, dst);
 			}
 		}
 
@@ -242,7 +304,7 @@ public class Matcher {
 			}
 		}
 
-		env.getCache().clear();
+		invalidateCache();
 	}
 
 	private static void unmatchMembers(ClassInstance cls) {
@@ -289,18 +351,21 @@ public class Matcher {
 		if (a.getCls().getMatch() != b.getCls()) throw new IllegalArgumentException("the methods don't belong to the same class");
 		if (a.getMatch() == b) return;
 
-		System.out.println("match method "+a+" -> "+b+(a.hasMappedName() ? " ("+a.getName(NameType.MAPPED_PLAIN)+")" : ""));
+		if (Log.isEnabled(Log.Level.DEBUG)) Log.debug("match method %s -> %s%s", a, b, getMappedNameSuffix(a));
 
 		if (a.getMatch() != null) {
 			if (matchHierarchyMembers) {
 				for (MethodInstance m : a.getAllHierarchyMembers()) {
 					if (m.hasMatch()) {
+						notifyMatchChange(m);
+						notifyMatchChange(m.getMatch());
 						unmatchArgsVars(m);
 						m.getMatch().setMatch(null);
 						m.setMatch(null);
 					}
 				}
 			} else {
+				notifyMatchChange(a.getMatch());
 				unmatchArgsVars(a);
 				a.getMatch().setMatch(null);
 				a.setMatch(null);
@@ -311,12 +376,15 @@ public class Matcher {
 			if (matchHierarchyMembers) {
 				for (MethodInstance m : b.getAllHierarchyMembers()) {
 					if (m.hasMatch()) {
+						notifyMatchChange(m);
+						notifyMatchChange(m.getMatch());
 						unmatchArgsVars(m);
 						m.getMatch().setMatch(null);
 						m.setMatch(null);
 					}
 				}
 			} else {
+				notifyMatchChange(b.getMatch());
 				unmatchArgsVars(b);
 				b.getMatch().setMatch(null);
 				b.setMatch(null);
@@ -325,6 +393,8 @@ public class Matcher {
 
 		a.setMatch(b);
 		b.setMatch(a);
+		notifyMatchChange(a);
+		notifyMatchChange(b);
 
 		if (matchHierarchyMembers) {
 			// match parent/child methods
@@ -333,23 +403,16 @@ public class Matcher {
 			if (srcHierarchyMembers.size() <= 1) return;
 
 			ClassEnv reqEnv = a.getCls().getEnv();
-			Set<MethodInstance> dstHierarchyMembers = null;
 
 			for (MethodInstance src : srcHierarchyMembers) {
 				if (src.hasMatch() || !src.getCls().hasMatch() || src.getCls().getEnv() != reqEnv) continue;
 
-				if (dstHierarchyMembers == null) dstHierarchyMembers = b.getAllHierarchyMembers();
-
-				for (MethodInstance dst : src.getCls().getMatch().getMethods()) {
-					if (dstHierarchyMembers.contains(dst)) {
-						match(src, dst, false);
-						break;
-					}
-				}
+				MethodInstance dst = src.getCls().getMatch().getHierarchyMember(b);
+				if (dst != null) match(src, dst, false);
 			}
 		}
 
-		env.getCache().clear();
+		invalidateCache();
 	}
 
 	public void match(FieldInstance a, FieldInstance b) {
@@ -358,15 +421,24 @@ public class Matcher {
 		if (a.getCls().getMatch() != b.getCls()) throw new IllegalArgumentException("the methods don't belong to the same class");
 		if (a.getMatch() == b) return;
 
-		System.out.println("match field "+a+" -> "+b+(a.hasMappedName() ? " ("+a.getName(NameType.MAPPED_PLAIN)+")" : ""));
+		if (Log.isEnabled(Log.Level.DEBUG)) Log.debug("match field %s -> %s%s", a, b, getMappedNameSuffix(a));
 
-		if (a.getMatch() != null) a.getMatch().setMatch(null);
-		if (b.getMatch() != null) b.getMatch().setMatch(null);
+		if (a.getMatch() != null) {
+			notifyMatchChange(a.getMatch());
+			a.getMatch().setMatch(null);
+		}
+
+		if (b.getMatch() != null) {
+			notifyMatchChange(b.getMatch());
+			b.getMatch().setMatch(null);
+		}
 
 		a.setMatch(b);
 		b.setMatch(a);
+		notifyMatchChange(a);
+		notifyMatchChange(b);
 
-		env.getCache().clear();
+		invalidateCache();
 	}
 
 	public void match(MethodVarInstance a, MethodVarInstance b) {
@@ -376,25 +448,39 @@ public class Matcher {
 		if (a.isArg() != b.isArg()) throw new IllegalArgumentException("the method vars are not of the same kind");
 		if (a.getMatch() == b) return;
 
-		System.out.println("match method arg "+a+" -> "+b+(a.hasMappedName() ? " ("+a.getName(NameType.MAPPED_PLAIN)+")" : ""));
+		if (Log.isEnabled(Log.Level.DEBUG)) Log.debug("match method arg %s -> %s%s", a, b, getMappedNameSuffix(a));
 
-		if (a.getMatch() != null) a.getMatch().setMatch(null);
-		if (b.getMatch() != null) b.getMatch().setMatch(null);
+		if (a.getMatch() != null) {
+			notifyMatchChange(a.getMatch());
+			a.getMatch().setMatch(null);
+		}
+
+		if (b.getMatch() != null) {
+			notifyMatchChange(b.getMatch());
+			b.getMatch().setMatch(null);
+		}
 
 		a.setMatch(b);
 		b.setMatch(a);
+		notifyMatchChange(a);
+		notifyMatchChange(b);
 
-		env.getCache().clear();
+		invalidateCache();
 	}
 
 	public void unmatch(ClassInstance cls) {
 		if (cls == null) throw new NullPointerException("null class");
 		if (cls.getMatch() == null) return;
 
-		System.out.println("unmatch class "+cls+" (was "+cls.getMatch()+")"+(cls.hasMappedName() ? " ("+cls.getName(NameType.MAPPED_PLAIN)+")" : ""));
+		if (Log.isEnabled(Log.Level.DEBUG)) Log.debug("unmatch class %s (was %s)%s", cls, cls.getMatch(), getMappedNameSuffix(cls));
 
-		cls.getMatch().setMatch(null);
+		ClassInstance prevMatch = cls.getMatch();
+		prevMatch.setMatch(null);
 		cls.setMatch(null);
+		candidatePool.onMatchChange(prevMatch);
+		candidatePool.onMatchChange(cls);
+		notifyMatchChange(prevMatch);
+		notifyMatchChange(cls);
 
 		unmatchMembers(cls);
 
@@ -406,14 +492,14 @@ public class Matcher {
 			}
 		}
 
-		env.getCache().clear();
+		invalidateCache();
 	}
 
 	public void unmatch(MemberInstance<?> m) {
 		if (m == null) throw new NullPointerException("null member");
 		if (m.getMatch() == null) return;
 
-		System.out.println("unmatch member "+m+" (was "+m.getMatch()+")"+(m.hasMappedName() ? " ("+m.getName(NameType.MAPPED_PLAIN)+")" : ""));
+		if (Log.isEnabled(Log.Level.DEBUG)) Log.debug("unmatch member %s (was %s)%s", m, m.getMatch(), getMappedNameSuffix(m));
 
 		if (m instanceof MethodInstance) {
 			for (MethodVarInstance arg : ((MethodInstance) m).getArgs()) {
@@ -425,6 +511,8 @@ public class Matcher {
 			}
 		}
 
+		notifyMatchChange(m.getMatch());
+		notifyMatchChange(m);
 		m.getMatch().setMatch(null);
 		m.setMatch(null);
 
@@ -434,54 +522,155 @@ public class Matcher {
 			}
 		}
 
-		env.getCache().clear();
+		invalidateCache();
 	}
 
 	public void unmatch(MethodVarInstance a) {
 		if (a == null) throw new NullPointerException("null method var");
 		if (a.getMatch() == null) return;
 
-		System.out.println("unmatch method var "+a+" (was "+a.getMatch()+")"+(a.hasMappedName() ? " ("+a.getName(NameType.MAPPED_PLAIN)+")" : ""));
+		if (Log.isEnabled(Log.Level.DEBUG)) Log.debug("unmatch method var %s (was %s)%s", a, a.getMatch(), getMappedNameSuffix(a));
 
+		notifyMatchChange(a.getMatch());
+		notifyMatchChange(a);
 		a.getMatch().setMatch(null);
 		a.setMatch(null);
 
-		env.getCache().clear();
+		invalidateCache();
 	}
 
-	public void autoMatchAll(DoubleConsumer progressReceiver) {
-		if (autoMatchClasses(ClassifierLevel.Initial, absClassAutoMatchThreshold, relClassAutoMatchThreshold, progressReceiver)) {
-			autoMatchClasses(ClassifierLevel.Initial, absClassAutoMatchThreshold, relClassAutoMatchThreshold, progressReceiver);
+	/**
+	 * Start a bulk operation, deferring per-call side effects like cache invalidation until the corresponding
+	 * {@link #endBulk()} call. Bulk operations may be nested.
+	 */
+	public void beginBulk() {
+		bulkDepth++;
+	}
+
+	public void endBulk() {
+		if (bulkDepth <= 0) throw new IllegalStateException("endBulk without beginBulk");
+
+		if (--bulkDepth == 0 && bulkCacheDirty) {
+			bulkCacheDirty = false;
+			env.getCache().clear();
+		}
+	}
+
+	/**
+	 * Register a listener for elements whose match changed, also invoked for the affected owner of indirectly changed
+	 * members and vars. Listeners may be invoked from any thread.
+	 */
+	public void addMatchChangeListener(Consumer<Matchable<?>> listener) {
+		matchChangeListeners.add(listener);
+	}
+
+	public void removeMatchChangeListener(Consumer<Matchable<?>> listener) {
+		matchChangeListeners.remove(listener);
+	}
+
+	private void notifyMatchChange(Matchable<?> m) {
+		for (Consumer<Matchable<?>> listener : matchChangeListeners) {
+			listener.accept(m);
+		}
+	}
+
+	/**
+	 * Discard cached data after changing the matchable state of m directly.
+	 */
+	public void invalidateCache(Matchable<?> m) {
+		notifyMatchChange(m);
+		invalidateCache();
+	}
+
+	/**
+	 * Discard cached data depending on the match state, needs to be called after changing matchable states directly.
+	 */
+	public void invalidateCache() {
+		if (bulkDepth > 0) {
+			bulkCacheDirty = true;
+		} else {
+			env.getCache().clear();
 		}
+	}
 
-		autoMatchLevel(ClassifierLevel.Intermediate, progressReceiver);
-		autoMatchLevel(ClassifierLevel.Full, progressReceiver);
-		autoMatchLevel(ClassifierLevel.Extra, progressReceiver);
+	private static String getMappedNameSuffix(Matchable<?> m) {
+		return m.hasMappedName() ? " ("+m.getName(NameType.MAPPED_PLAIN)+")" : "";
+	}
 
-		boolean matchedAny;
+	public void autoMatchAll(DoubleConsumer progressReceiver) {
+		autoMatchAll(progressReceiver, new CancellationToken());
+	}
+
+	/**
+	 * Run the configured auto matching pipeline, see {@link #autoMatch(List, DoubleConsumer, CancellationToken)}.
+	 */
+	public void autoMatchAll(DoubleConsumer progressReceiver, CancellationToken cancelToken) {
+		autoMatch(autoMatchStages, progressReceiver, cancelToken);
+	}
 
-		do {
-			matchedAny = autoMatchMethodArgs(ClassifierLevel.Full, absMethodArgAutoMatchThreshold, relMethodArgAutoMatchThreshold, progressReceiver);
-			matchedAny |= autoMatchMethodVars(ClassifierLevel.Full, absMethodVarAutoMatchThreshold, relMethodVarAutoMatchThreshold, progressReceiver);
-		} while (matchedAny);
+	/**
+	 * Run the auto matching stages in order until they are done or cancelToken gets cancelled.
+	 *
+	 * <p>Cancelling keeps the matches of all completed passes. Member and var passes also keep the results of their
+	 * completed items since those are independent of each other, an interrupted class pass gets discarded.
+	 */
+	public void autoMatch(List<AutoMatchStage> stages, DoubleConsumer progressReceiver, CancellationToken cancelToken) {
+		for (AutoMatchStage stage : stages) {
+			if (cancelToken.isCancelled()) break;
+
+			if (stage.getParallelism() > 0) {
+				ForkJoinPool pool = new ForkJoinPool(stage.getParallelism(), ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+
+				try {
+					pool.invoke(ForkJoinTask.adapt(() -> autoMatchStage(stage, progressReceiver, cancelToken)));
+				} finally {
+					pool.shutdown();
+				}
+			} else {
+				autoMatchStage(stage, progressReceiver, cancelToken);
+			}
+		}
 
 		env.getCache().clear();
+
+		if (cancelToken.isCancelled()) {
+			Log.info("Auto matching stopped early (%s)", cancelToken.isExpired() ? "time budget exceeded" : "cancelled");
+		}
 	}
 
-	private void autoMatchLevel(ClassifierLevel level, DoubleConsumer progressReceiver) {
-		boolean matchedAny;
-		boolean matchedClassesBefore = true;
+	private void autoMatchStage(AutoMatchStage stage, DoubleConsumer progressReceiver, CancellationToken cancelToken) {
+		List<AutoMatchStage.Kind> kinds = stage.getKinds();
+		int maxIterations = stage.getMaxIterations();
+		int passesWithoutMatch = 0;
 
-		do {
-			matchedAny = autoMatchMethods(level, absMethodAutoMatchThreshold, relMethodAutoMatchThreshold, progressReceiver);
-			matchedAny |= autoMatchFields(level, absFieldAutoMatchThreshold, relFieldAutoMatchThreshold, progressReceiver);
+		for (int i = 0; maxIterations <= 0 || i < maxIterations; i++) {
+			for (AutoMatchStage.Kind kind : kinds) {
+				if (cancelToken.isCancelled()) return;
 
-			if (!matchedAny && !matchedClassesBefore) {
-				break;
+				if (autoMatchPass(kind, stage.getLevel(), stage.getAbsThreshold(), stage.getRelThreshold(), progressReceiver, cancelToken)) {
+					passesWithoutMatch = 0;
+				} else if (++passesWithoutMatch == kinds.size()) { // all passes already saw the current matches
+					return;
+				}
 			}
+		}
+	}
+
+	private boolean autoMatchPass(AutoMatchStage.Kind kind, ClassifierLevel level, double absThreshold, double relThreshold, DoubleConsumer progressReceiver, CancellationToken cancelToken) {
+		switch (kind) {
+		case CLASSES:
+			return autoMatchClasses(level, absThreshold, relThreshold, progressReceiver, cancelToken);
+		case METHODS:
+			return autoMatchMethods(level, absThreshold, relThreshold, progressReceiver, cancelToken);
+		case FIELDS:
+			return autoMatchFields(level, absThreshold, relThreshold, progressReceiver, cancelToken);
+		case METHOD_ARGS:
+			return autoMatchMethodArgs(level, absThreshold, relThreshold, progressReceiver, cancelToken);
+		case METHOD_VARS:
+			return autoMatchMethodVars(level, absThreshold, relThreshold, progressReceiver, cancelToken);
+		}
 
-			matchedAny |= matchedClassesBefore = autoMatchClasses(level, absClassAutoMatchThreshold, relClassAutoMatchThreshold, progressReceiver);
-		} while (matchedAny);
+		throw new IllegalStateException("unknown kind: "+kind);
 	}
 
 	public boolean autoMatchClasses(DoubleConsumer progressReceiver) {
@@ -489,67 +678,164 @@ public class Matcher {
 	}
 
 	public boolean autoMatchClasses(ClassifierLevel level, double absThreshold, double relThreshold, DoubleConsumer progressReceiver) {
-		boolean assumeBothOrNoneObfuscated = env.assumeBothOrNoneObfuscated;
-		Predicate<ClassInstance> filter = cls -> cls.isReal() && (!assumeBothOrNoneObfuscated || cls.isNameObfuscated()) && !cls.hasMatch() && cls.isMatchable();
+		return autoMatchClasses(level, absThreshold, relThreshold, progressReceiver, new CancellationToken());
+	}
 
-		List<ClassInstance> classes = env.getClassesA().stream()
-				.filter(filter)
-				.collect(Collectors.toList());
+	public boolean autoMatchClasses(ClassifierLevel level, double absThreshold, double relThreshold, DoubleConsumer progressReceiver, CancellationToken cancelToken) {
+		if (cancelToken.isCancelled()) return false;
 
-		ClassInstance[] cmpClasses = env.getClassesB().stream()
-				.filter(filter)
-				.collect(Collectors.toList()).toArray(new ClassInstance[0]);
+		boolean assumeBothOrNoneObfuscated = env.assumeBothOrNoneObfuscated;
+		List<ClassInstance> classes = Arrays.asList(candidatePool.getUnmatchedClasses(true, assumeBothOrNoneObfuscated));
+		ClassInstance[] cmpClasses = candidatePool.getUnmatchedClasses(false, assumeBothOrNoneObfuscated);
 
 		double maxScore = ClassClassifier.getMaxScore(level);
 		double maxMismatch = maxScore - getRawScore(absThreshold * (1 - relThreshold), maxScore);
 		Map<ClassInstance, ClassInstance> matches = new ConcurrentHashMap<>(classes.size());
 
-		runInParallel(classes, cls -> {
-			List<RankResult<ClassInstance>> ranking = ClassClassifier.rank(cls, cmpClasses, level, env, maxMismatch);
+		try {
+			runInParallel(classes, cls -> {
+				List<RankResult<ClassInstance>> ranking = ClassClassifier.rank(cls, cmpClasses, level, env, maxMismatch, checkRankResults, getMinBestRatio(relThreshold));
+
+				if (checkRank(ranking, absThreshold, relThreshold, maxScore)) {
+					ClassInstance match = ranking.get(0).getSubject();
 
-			if (checkRank(ranking, absThreshold, relThreshold, maxScore)) {
-				ClassInstance match = ranking.get(0).getSubject();
+					matches.put(cls, match);
+				}
+			}, cls -> cls.getMethods().length + cls.getFields().length, cancelToken, progressReceiver);
+		} catch (CancellationException e) {
+			// conflicts with the classes not ranked yet are unknown, so the partial result can't be sanitized
+			Log.info("Auto matching classes cancelled, discarding %d pending matches", matches.size());
 
-				matches.put(cls, match);
-			}
-		}, progressReceiver);
+			return false;
+		}
 
 		sanitizeMatches(matches);
 
-		for (Map.Entry<ClassInstance, ClassInstance> entry : matches.entrySet()) {
-			match(entry.getKey(), entry.getValue());
-		}
+		new MatchBatch(this).matchAll(matches).apply();
 
-		System.out.println("Auto matched "+matches.size()+" classes ("+(classes.size() - matches.size())+" unmatched, "+env.getClassesA().size()+" total)");
+		Log.info("Auto matched %d classes (%d unmatched, %d total)", matches.size(), classes.size() - matches.size(), env.getClassesA().size());
 
 		return !matches.isEmpty();
 	}
 
-	public static <T, C> void runInParallel(List<T> workSet, Consumer<T> worker, DoubleConsumer progressReceiver) {
+	public static <T> void runInParallel(List<T> workSet, Consumer<T> worker, DoubleConsumer progressReceiver) {
+		runInParallel(workSet, worker, null, () -> false, progressReceiver);
+	}
+
+	/**
+	 * Process workSet in parallel on {@link #threadPool} or the calling worker thread's stage pool, blocking until done.
+	 *
+	 * <p>Items with a higher cost estimate get processed first if costEstimator is present, so expensive items don't
+	 * end up last on a single thread. The remaining work gets split adaptively, depending on how much other threads
+	 * need to steal. Once cancelCheck returns true, no further items are started and a {@link CancellationException}
+	 * is thrown after the already running items completed.
+	 */
+	public static <T> void runInParallel(List<T> workSet, Consumer<T> worker, ToLongFunction<T> costEstimator, BooleanSupplier cancelCheck, DoubleConsumer progressReceiver) {
 		if (workSet.isEmpty()) return;
 
-		AtomicInteger itemsDone = new AtomicInteger();
-		int updateRate = Math.max(1, workSet.size() / 200);
+		if (costEstimator != null) {
+			long[] costs = new long[workSet.size()];
+			Integer[] order = new Integer[costs.length];
 
-		try {
-			List<Future<Void>> futures = threadPool.invokeAll(workSet.stream().<Callable<Void>>map(workItem -> () -> {
-				worker.accept(workItem);
+			for (int i = 0; i < costs.length; i++) {
+				costs[i] = costEstimator.applyAsLong(workSet.get(i));
+				order[i] = i;
+			}
 
-				int cItemsDone = itemsDone.incrementAndGet();
+			Arrays.sort(order, (a, b) -> Long.compare(costs[b], costs[a]));
+			List<T> sorted = new ArrayList<>(costs.length);
 
-				if ((cItemsDone % updateRate) == 0) {
-					progressReceiver.accept((double) cItemsDone / workSet.size());
-				}
+			for (int idx : order) {
+				sorted.add(workSet.get(idx));
+			}
+
+			workSet = sorted;
+		}
+
+		ParallelTask<T> task = new ParallelTask<>(workSet, 0, workSet.size(), worker, cancelCheck, new ParallelProgress(workSet.size(), progressReceiver));
 
-				return null;
-			}).collect(Collectors.toList()));
+		ForkJoinPool pool = ForkJoinTask.getPool();
 
-			for (Future<Void> future : futures) {
-				future.get();
+		if (pool != null && pool != ForkJoinPool.commonPool()) { // nested use from a worker thread of the shared or a stage pool
+			task.invoke();
+		} else {
+			threadPool.invoke(task);
+		}
+
+		if (task.progress.itemsDone.get() < workSet.size()) throw new CancellationException();
+	}
+
+	@SuppressWarnings("serial")
+	private static final class ParallelTask<T> extends RecursiveAction {
+		ParallelTask(List<T> workSet, int start, int end, Consumer<T> worker, BooleanSupplier cancelCheck, ParallelProgress progress) {
+			this.workSet = workSet;
+			this.start = start;
+			this.end = end;
+			this.worker = worker;
+			this.cancelCheck = cancelCheck;
+			this.progress = progress;
+		}
+
+		@Override
+		protected void compute() {
+			int hi = end;
+			ParallelTask<T> forked = null;
+
+			// fork off the upper half while other threads may run out of work, the lower half has the more expensive items
+
+			while (hi - start > 1 && getSurplusQueuedTaskCount() <= maxSurplusTasks) {
+				int mid = (start + hi) >>> 1;
+				ParallelTask<T> task = new ParallelTask<>(workSet, mid, hi, worker, cancelCheck, progress);
+				task.next = forked;
+				forked = task;
+				task.fork();
+				hi = mid;
+			}
+
+			for (int i = start; i < hi; i++) {
+				if (cancelCheck.getAsBoolean()) break; // reported by runInParallel once all running items are done
+
+				worker.accept(workSet.get(i));
+				progress.itemDone();
+			}
+
+			// join in reverse fork order, processing those that weren't stolen locally
+			while (forked != null) {
+				forked.join();
+				forked = forked.next;
+			}
+		}
+
+		private static final int maxSurplusTasks = 2;
+
+		private final List<T> workSet;
+		private final int start;
+		private final int end;
+		private final Consumer<T> worker;
+		private final BooleanSupplier cancelCheck;
+		private final ParallelProgress progress;
+		private ParallelTask<T> next;
+	}
+
+	private static final class ParallelProgress {
+		ParallelProgress(int total, DoubleConsumer receiver) {
+			this.total = total;
+			this.receiver = receiver;
+			this.updateRate = Math.max(1, total / 200);
+		}
+
+		void itemDone() {
+			int done = itemsDone.incrementAndGet();
+
+			if (done % updateRate == 0) {
+				receiver.accept((double) done / total);
 			}
-		} catch (ExecutionException | InterruptedException e) {
-			throw new RuntimeException(e);
 		}
+
+		private final int total;
+		private final DoubleConsumer receiver;
+		private final int updateRate;
+		private final AtomicInteger itemsDone = new AtomicInteger();
 	}
 
 	public boolean autoMatchMethods(DoubleConsumer progressReceiver) {
@@ -557,16 +843,18 @@ public class Matcher {
 	}
 
 	public boolean autoMatchMethods(ClassifierLevel level, double absThreshold, double relThreshold, DoubleConsumer progressReceiver) {
+		return autoMatchMethods(level, absThreshold, relThreshold, progressReceiver, new CancellationToken());
+	}
+
+	public boolean autoMatchMethods(ClassifierLevel level, double absThreshold, double relThreshold, DoubleConsumer progressReceiver, CancellationToken cancelToken) {
 		AtomicInteger totalUnmatched = new AtomicInteger();
 		Map<MethodInstance, MethodInstance> matches = match(level, absThreshold, relThreshold,
 				cls -> cls.getMethods(), MethodClassifier::rank, MethodClassifier.getMaxScore(level),
-				progressReceiver, totalUnmatched);
+				progressReceiver, cancelToken, totalUnmatched);
 
-		for (Map.Entry<MethodInstance, MethodInstance> entry : matches.entrySet()) {
-			match(entry.getKey(), entry.getValue());
-		}
+		new MatchBatch(this).matchAll(matches).apply();
 
-		System.out.println("Auto matched "+matches.size()+" methods ("+totalUnmatched.get()+" unmatched)");
+		Log.info("Auto matched %d methods (%d unmatched)", matches.size(), totalUnmatched.get());
 
 		return !matches.isEmpty();
 	}
@@ -576,59 +864,82 @@ public class Matcher {
 	}
 
 	public boolean autoMatchFields(ClassifierLevel level, double absThreshold, double relThreshold, DoubleConsumer progressReceiver) {
+		return autoMatchFields(level, absThreshold, relThreshold, progressReceiver, new CancellationToken());
+	}
+
+	public boolean autoMatchFields(ClassifierLevel level, double absThreshold, double relThreshold, DoubleConsumer progressReceiver, CancellationToken cancelToken) {
 		AtomicInteger totalUnmatched = new AtomicInteger();
 		double maxScore = FieldClassifier.getMaxScore(level);
 
 		Map<FieldInstance, FieldInstance> matches = match(level, absThreshold, relThreshold,
 				cls -> cls.getFields(), FieldClassifier::rank, maxScore,
-				progressReceiver, totalUnmatched);
+				progressReceiver, cancelToken, totalUnmatched);
 
-		for (Map.Entry<FieldInstance, FieldInstance> entry : matches.entrySet()) {
-			match(entry.getKey(), entry.getValue());
-		}
+		new MatchBatch(this).matchAll(matches).apply();
 
-		System.out.println("Auto matched "+matches.size()+" fields ("+totalUnmatched.get()+" unmatched)");
+		Log.info("Auto matched %d fields (%d unmatched)", matches.size(), totalUnmatched.get());
 
 		return !matches.isEmpty();
 	}
 
 	private <T extends MemberInstance<T>> Map<T, T> match(ClassifierLevel level, double absThreshold, double relThreshold,
 			Function<ClassInstance, T[]> memberGetter, IRanker<T> ranker, double maxScore,
-			DoubleConsumer progressReceiver, AtomicInteger totalUnmatched) {
-		List<ClassInstance> classes = env.getClassesA().stream()
-				.filter(cls -> cls.isReal() && cls.hasMatch() && memberGetter.apply(cls).length > 0)
-				.filter(cls -> {
-					for (T member : memberGetter.apply(cls)) {
-						if (!member.hasMatch() && member.isMatchable()) return true;
-					}
+			DoubleConsumer progressReceiver, CancellationToken cancelToken, AtomicInteger totalUnmatched) {
+		if (cancelToken.isCancelled()) return Collections.emptyMap();
+
+		List<ClassInstance> classes = candidatePool.getMatchedClassesA();
+
+		classes.removeIf(cls -> {
+			for (T member : memberGetter.apply(cls)) {
+				if (!member.hasMatch() && member.isMatchable()) return false;
+			}
+
+			return true;
+		});
 
-					return false;
-				})
-				.collect(Collectors.toList());
 		if (classes.isEmpty()) return Collections.emptyMap();
 
 		double maxMismatch = maxScore - getRawScore(absThreshold * (1 - relThreshold), maxScore);
+		double minBestRatio = getMinBestRatio(relThreshold);
 		Map<T, T> ret = new ConcurrentHashMap<>(512);
 
-		runInParallel(classes, cls -> {
-			int unmatched = 0;
+		boolean assignMembers = globalMemberAssignment;
 
-			for (T member : memberGetter.apply(cls)) {
-				if (member.hasMatch() || !member.isMatchable()) continue;
+		try {
+			runInParallel(classes, cls -> {
+				int unmatched = 0;
+				MemberAssignment<T> assignment = assignMembers ? new MemberAssignment<>(absThreshold, relThreshold, maxScore) : null;
 
-				List<RankResult<T>> ranking = ranker.rank(member, memberGetter.apply(cls.getMatch()), level, env, maxMismatch);
+				for (T member : memberGetter.apply(cls)) {
+					if (member.hasMatch() || !member.isMatchable()) continue;
 
-				if (checkRank(ranking, absThreshold, relThreshold, maxScore)) {
-					T match = ranking.get(0).getSubject();
+					List<RankResult<T>> ranking = assignment != null // the assignment needs all candidates
+							? ranker.rank(member, memberGetter.apply(cls.getMatch()), level, env, maxMismatch, Integer.MAX_VALUE, 0)
+							: ranker.rank(member, memberGetter.apply(cls.getMatch()), level, env, maxMismatch, checkRankResults, minBestRatio);
 
-					ret.put(member, match);
-				} else {
-					unmatched++;
+					if (assignment != null) {
+						assignment.add(member, ranking);
+					} else if (checkRank(ranking, absThreshold, relThreshold, maxScore)) {
+						T match = ranking.get(0).getSubject();
+
+						ret.put(member, match);
+					} else {
+						unmatched++;
+					}
 				}
-			}
 
-			if (unmatched > 0) totalUnmatched.addAndGet(unmatched);
-		}, progressReceiver);
+				if (assignment != null) {
+					Map<T, T> matches = new IdentityHashMap<>();
+					assignment.solve(matches);
+					ret.putAll(matches);
+					unmatched = assignment.size() - matches.size();
+				}
+
+				if (unmatched > 0) totalUnmatched.addAndGet(unmatched);
+			}, cls -> (long) memberGetter.apply(cls).length * memberGetter.apply(cls.getMatch()).length, cancelToken, progressReceiver);
+		} catch (CancellationException e) {
+			// keep the results of the completed classes, their members don't compete with other classes' members
+		}
 
 		sanitizeMatches(ret);
 
@@ -640,7 +951,11 @@ public class Matcher {
 	}
 
 	public boolean autoMatchMethodArgs(ClassifierLevel level, double absThreshold, double relThreshold, DoubleConsumer progressReceiver) {
-		return autoMatchMethodVars(true, MethodInstance::getArgs, level, absThreshold, relThreshold, progressReceiver);
+		return autoMatchMethodArgs(level, absThreshold, relThreshold, progressReceiver, new CancellationToken());
+	}
+
+	public boolean autoMatchMethodArgs(ClassifierLevel level, double absThreshold, double relThreshold, DoubleConsumer progressReceiver, CancellationToken cancelToken) {
+		return autoMatchMethodVars(true, MethodInstance::getArgs, level, absThreshold, relThreshold, progressReceiver, cancelToken);
 	}
 
 	public boolean autoMatchMethodVars(DoubleConsumer progressReceiver) {
@@ -648,23 +963,31 @@ public class Matcher {
 	}
 
 	public boolean autoMatchMethodVars(ClassifierLevel level, double absThreshold, double relThreshold, DoubleConsumer progressReceiver) {
-		return autoMatchMethodVars(false, MethodInstance::getVars, level, absThreshold, relThreshold, progressReceiver);
+		return autoMatchMethodVars(level, absThreshold, relThreshold, progressReceiver, new CancellationToken());
+	}
+
+	public boolean autoMatchMethodVars(ClassifierLevel level, double absThreshold, double relThreshold, DoubleConsumer progressReceiver, CancellationToken cancelToken) {
+		return autoMatchMethodVars(false, MethodInstance::getVars, level, absThreshold, relThreshold, progressReceiver, cancelToken);
 	}
 
 	private boolean autoMatchMethodVars(boolean isArg, Function<MethodInstance, MethodVarInstance[]> supplier,
-			ClassifierLevel level, double absThreshold, double relThreshold, DoubleConsumer progressReceiver) {
-		List<MethodInstance> methods = env.getClassesA().stream()
-				.filter(cls -> cls.isReal() && cls.hasMatch() && cls.getMethods().length > 0)
-				.flatMap(cls -> Stream.<MethodInstance>of(cls.getMethods()))
-				.filter(m -> m.hasMatch() && supplier.apply(m).length > 0)
-				.filter(m -> {
-					for (MethodVarInstance a : supplier.apply(m)) {
-						if (!a.hasMatch() && a.isMatchable()) return true;
-					}
+			ClassifierLevel level, double absThreshold, double relThreshold, DoubleConsumer progressReceiver, CancellationToken cancelToken) {
+		if (cancelToken.isCancelled()) return false;
 
-					return false;
-				})
-				.collect(Collectors.toList());
+		List<MethodInstance> methods = new ArrayList<>();
+
+		for (ClassInstance cls : candidatePool.getMatchedClassesA()) {
+			methodLoop: for (MethodInstance m : cls.getMethods()) {
+				if (!m.hasMatch()) continue;
+
+				for (MethodVarInstance a : supplier.apply(m)) {
+					if (!a.hasMatch() && a.isMatchable()) {
+						methods.add(m);
+						continue methodLoop;
+					}
+				}
+			}
+		}
 		Map<MethodVarInstance, MethodVarInstance> matches;
 		AtomicInteger totalUnmatched = new AtomicInteger();
 
@@ -673,36 +996,39 @@ public class Matcher {
 		} else {
 			double maxScore = MethodVarClassifier.getMaxScore(level);
 			double maxMismatch = maxScore - getRawScore(absThreshold * (1 - relThreshold), maxScore);
+			double minBestRatio = getMinBestRatio(relThreshold);
 			matches = new ConcurrentHashMap<>(512);
 
-			runInParallel(methods, m -> {
-				int unmatched = 0;
+			try {
+				runInParallel(methods, m -> {
+					int unmatched = 0;
 
-				for (MethodVarInstance var : supplier.apply(m)) {
-					if (var.hasMatch() || !var.isMatchable()) continue;
+					for (MethodVarInstance var : supplier.apply(m)) {
+						if (var.hasMatch() || !var.isMatchable()) continue;
 
-					List<RankResult<MethodVarInstance>> ranking = MethodVarClassifier.rank(var, supplier.apply(m.getMatch()), level, env, maxMismatch);
+						List<RankResult<MethodVarInstance>> ranking = MethodVarClassifier.rank(var, supplier.apply(m.getMatch()), level, env, maxMismatch, checkRankResults, minBestRatio);
 
-					if (checkRank(ranking, absThreshold, relThreshold, maxScore)) {
-						MethodVarInstance match = ranking.get(0).getSubject();
+						if (checkRank(ranking, absThreshold, relThreshold, maxScore)) {
+							MethodVarInstance match = ranking.get(0).getSubject();
 
-						matches.put(var, match);
-					} else {
-						unmatched++;
+							matches.put(var, match);
+						} else {
+							unmatched++;
+						}
 					}
-				}
 
-				if (unmatched > 0) totalUnmatched.addAndGet(unmatched);
-			}, progressReceiver);
+					if (unmatched > 0) totalUnmatched.addAndGet(unmatched);
+				}, m -> (long) supplier.apply(m).length * supplier.apply(m.getMatch()).length, cancelToken, progressReceiver);
+			} catch (CancellationException e) {
+				// keep the results of the completed methods, their vars don't compete with other methods' vars
+			}
 
 			sanitizeMatches(matches);
 		}
 
-		for (Map.Entry<MethodVarInstance, MethodVarInstance> entry : matches.entrySet()) {
-			match(entry.getKey(), entry.getValue());
-		}
+		new MatchBatch(this).matchAll(matches).apply();
 
-		System.out.println("Auto matched "+matches.size()+" method "+(isArg ? "arg" : "var")+"s ("+totalUnmatched.get()+" unmatched)");
+		Log.info("Auto matched %d method %ss (%d unmatched)", matches.size(), (isArg ? "arg" : "var"), totalUnmatched.get());
 
 		return !matches.isEmpty();
 	}
@@ -732,6 +1058,16 @@ public class Matcher {
 		return Math.sqrt(score) * maxScore;
 	}
 
+	/**
+	 * Get the raw score ratio to the best result below which a result can't affect {@link #checkRank}.
+	 *
+	 * <p>A result scoring below it can't be the best one and can't fail the relative threshold check for any best
+	 * result found later since those only score higher.
+	 */
+	public static double getMinBestRatio(double relThreshold) {
+		return Math.sqrt(1 - relThreshold); // getScore squares the raw score
+	}
+
 	public static <T> void sanitizeMatches(Map<T, T> matches) {
 		Set<T> matched = Collections.newSetFromMap(new IdentityHashMap<>(matches.size()));
 		Set<T> conflictingMatches = Collections.newSetFromMap(new IdentityHashMap<>());
@@ -839,18 +1175,25 @@ public class Matcher {
 		public final int matchedFieldCount;
 	}
 
-	public static final ExecutorService threadPool = Executors.newWorkStealingPool();
+	public static final ForkJoinPool threadPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+	private static final int checkRankResults = 2; // checkRank only looks at the best two results
 
 	private final ClassEnvironment env;
+	private final CandidatePool candidatePool;
+	private int bulkDepth;
+	private boolean bulkCacheDirty;
+	private volatile boolean globalMemberAssignment;
 	private final ClassifierLevel autoMatchLevel = ClassifierLevel.Extra;
-	private final double absClassAutoMatchThreshold = 0.85;
-	private final double relClassAutoMatchThreshold = 0.085;
-	private final double absMethodAutoMatchThreshold = 0.85;
-	private final double relMethodAutoMatchThreshold = 0.085;
-	private final double absFieldAutoMatchThreshold = 0.85;
-	private final double relFieldAutoMatchThreshold = 0.085;
-	private final double absMethodArgAutoMatchThreshold = 0.85;
-	private final double relMethodArgAutoMatchThreshold = 0.085;
-	private final double absMethodVarAutoMatchThreshold = 0.85;
-	private final double relMethodVarAutoMatchThreshold = 0.085;
+	private final double absClassAutoMatchThreshold = AutoMatchStage.defaultAbsThreshold;
+	private final double relClassAutoMatchThreshold = AutoMatchStage.defaultRelThreshold;
+	private final double absMethodAutoMatchThreshold = AutoMatchStage.defaultAbsThreshold;
+	private final double relMethodAutoMatchThreshold = AutoMatchStage.defaultRelThreshold;
+	private final double absFieldAutoMatchThreshold = AutoMatchStage.defaultAbsThreshold;
+	private final double relFieldAutoMatchThreshold = AutoMatchStage.defaultRelThreshold;
+	private final double absMethodArgAutoMatchThreshold = AutoMatchStage.defaultAbsThreshold;
+	private final double relMethodArgAutoMatchThreshold = AutoMatchStage.defaultRelThreshold;
+	private final double absMethodVarAutoMatchThreshold = AutoMatchStage.defaultAbsThreshold;
+	private final double relMethodVarAutoMatchThreshold = AutoMatchStage.defaultRelThreshold;
+	private List<AutoMatchStage> autoMatchStages = AutoMatchStage.getDefaultPipeline();
+	private final List<Consumer<Matchable<?>>> matchChangeListeners = new CopyOnWriteArrayList<>();
 }
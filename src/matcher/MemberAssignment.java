@@ -0,0 +1,274 @@
+package matcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import matcher.classifier.RankResult;
+
+/**
+ * Global assignment of source elements to their ranked candidates, maximizing the total score.
+ *
+ * <p>Only candidates reaching the absolute threshold can be assigned. The graph formed by them is split into its
+ * connected components, each component is solved with the Hungarian algorithm. An assigned pair is only kept if
+ * neither side has an unassigned alternative within the relative threshold, so competing elements no longer
+ * invalidate each other as long as the assignment is unambiguous.
+ */
+final class MemberAssignment<T> {
+	MemberAssignment(double absThreshold, double relThreshold, double maxScore) {
+		this.absThreshold = absThreshold;
+		this.relThreshold = relThreshold;
+		this.maxScore = maxScore;
+	}
+
+	void add(T src, List<RankResult<T>> ranking) {
+		int row = rows.size();
+		rows.add(src);
+
+		double minScore = absThreshold * (1 - relThreshold); // lower scores can't affect the relative threshold check
+
+		for (RankResult<T> result : ranking) {
+			double score = Matcher.getScore(result.getScore(), maxScore);
+			if (score < minScore) break; // ranking is sorted by descending score
+
+			Integer col = colIndices.get(result.getSubject());
+
+			if (col == null) {
+				col = cols.size();
+				cols.add(result.getSubject());
+				colIndices.put(result.getSubject(), col);
+			}
+
+			edges.add(new Edge(row, col, score));
+		}
+	}
+
+	int size() {
+		return rows.size();
+	}
+
+	/**
+	 * Solve the assignment and store the unambiguous pairs in out.
+	 */
+	void solve(Map<T, T> out) {
+		int rowCount = rows.size();
+		int[] component = new int[rowCount + cols.size()]; // union-find over rows followed by cols
+
+		for (int i = 0; i < component.length; i++) {
+			component[i] = i;
+		}
+
+		for (Edge edge : edges) {
+			if (edge.score < absThreshold) continue;
+
+			int a = find(component, edge.row);
+			int b = find(component, rowCount + edge.col);
+			if (a != b) component[a] = b;
+		}
+
+		Map<Integer, List<Edge>> componentEdges = new HashMap<>();
+
+		for (Edge edge : edges) {
+			if (edge.score < absThreshold) continue;
+
+			componentEdges.computeIfAbsent(find(component, edge.row), ignore -> new ArrayList<>()).add(edge);
+		}
+
+		int[] rowAssignment = new int[rowCount];
+		int[] colAssignment = new int[cols.size()];
+		Arrays.fill(rowAssignment, -1);
+		Arrays.fill(colAssignment, -1);
+
+		for (List<Edge> compEdges : componentEdges.values()) {
+			solveComponent(compEdges, rowAssignment, colAssignment);
+		}
+
+		// reject assignments with an unassigned alternative that scores too close
+
+		double[] assignedScores = new double[rowCount];
+
+		for (Edge edge : edges) {
+			if (rowAssignment[edge.row] == edge.col) assignedScores[edge.row] = edge.score;
+		}
+
+		boolean[] ambiguous = new boolean[rowCount];
+
+		for (Edge edge : edges) {
+			if (rowAssignment[edge.row] == edge.col) continue;
+
+			if (rowAssignment[edge.row] >= 0
+					&& colAssignment[edge.col] < 0
+					&& edge.score >= assignedScores[edge.row] * (1 - relThreshold)) { // free alternative target
+				ambiguous[edge.row] = true;
+			}
+
+			int colOwner = colAssignment[edge.col];
+
+			if (colOwner >= 0
+					&& rowAssignment[edge.row] < 0
+					&& edge.score >= absThreshold
+					&& edge.score >= assignedScores[colOwner] * (1 - relThreshold)) { // free alternative source
+				ambiguous[colOwner] = true;
+			}
+		}
+
+		for (int row = 0; row < rowCount; row++) {
+			int col = rowAssignment[row];
+
+			if (col >= 0 && !ambiguous[row]) {
+				out.put(rows.get(row), cols.get(col));
+			}
+		}
+	}
+
+	private static int find(int[] parents, int idx) {
+		while (parents[idx] != idx) {
+			parents[idx] = parents[parents[idx]];
+			idx = parents[idx];
+		}
+
+		return idx;
+	}
+
+	private static void solveComponent(List<Edge> edges, int[] rowAssignment, int[] colAssignment) {
+		if (edges.size() == 1) {
+			Edge edge = edges.get(0);
+			rowAssignment[edge.row] = edge.col;
+			colAssignment[edge.col] = edge.row;
+			return;
+		}
+
+		// map global row/col indices to dense local ones
+
+		Map<Integer, Integer> localRows = new HashMap<>();
+		Map<Integer, Integer> localCols = new HashMap<>();
+		List<Integer> globalRows = new ArrayList<>();
+		List<Integer> globalCols = new ArrayList<>();
+
+		for (Edge edge : edges) {
+			if (localRows.putIfAbsent(edge.row, globalRows.size()) == null) globalRows.add(edge.row);
+			if (localCols.putIfAbsent(edge.col, globalCols.size()) == null) globalCols.add(edge.col);
+		}
+
+		// the hungarian algorithm requires rows <= cols, transpose if necessary
+
+		boolean transposed = globalRows.size() > globalCols.size();
+		int n = transposed ? globalCols.size() : globalRows.size();
+		int m = transposed ? globalRows.size() : globalCols.size();
+		double[][] cost = new double[n + 1][m + 1]; // 1-based, missing edges cost 0 = unassigned
+
+		for (Edge edge : edges) {
+			int r = localRows.get(edge.row) + 1;
+			int c = localCols.get(edge.col) + 1;
+
+			if (transposed) {
+				cost[c][r] = -edge.score;
+			} else {
+				cost[r][c] = -edge.score;
+			}
+		}
+
+		int[] colRows = hungarian(cost, n, m);
+
+		for (int j = 1; j <= m; j++) {
+			int i = colRows[j];
+			if (i == 0) continue;
+
+			int r = transposed ? j : i;
+			int c = transposed ? i : j;
+
+			if (cost[i][j] < 0) { // only real edges
+				int row = globalRows.get(r - 1);
+				int col = globalCols.get(c - 1);
+				rowAssignment[row] = col;
+				colAssignment[col] = row;
+			}
+		}
+	}
+
+	/**
+	 * Minimum cost assignment for n rows to m columns, n <= m, with 1-based cost indices.
+	 *
+	 * @return the row assigned to each column, 0 if none
+	 */
+	private static int[] hungarian(double[][] cost, int n, int m) {
+		double[] u = new double[n + 1];
+		double[] v = new double[m + 1];
+		int[] p = new int[m + 1];
+		int[] way = new int[m + 1];
+		double[] minv = new double[m + 1];
+		boolean[] used = new boolean[m + 1];
+
+		for (int i = 1; i <= n; i++) {
+			p[0] = i;
+			int j0 = 0;
+			Arrays.fill(minv, Double.POSITIVE_INFINITY);
+			Arrays.fill(used, false);
+
+			do {
+				used[j0] = true;
+				int i0 = p[j0];
+				double delta = Double.POSITIVE_INFINITY;
+				int j1 = 0;
+
+				for (int j = 1; j <= m; j++) {
+					if (used[j]) continue;
+
+					double cur = cost[i0][j] - u[i0] - v[j];
+
+					if (cur < minv[j]) {
+						minv[j] = cur;
+						way[j] = j0;
+					}
+
+					if (minv[j] < delta) {
+						delta = minv[j];
+						j1 = j;
+					}
+				}
+
+				for (int j = 0; j <= m; j++) {
+					if (used[j]) {
+						u[p[j]] += delta;
+						v[j] -= delta;
+					} else {
+						minv[j] -= delta;
+					}
+				}
+
+				j0 = j1;
+			} while (p[j0] != 0);
+
+			do {
+				int j1 = way[j0];
+				p[j0] = p[j1];
+				j0 = j1;
+			} while (j0 != 0);
+		}
+
+		return p;
+	}
+
+	private static final class Edge {
+		Edge(int row, int col, double score) {
+			this.row = row;
+			this.col = col;
+			this.score = score;
+		}
+
+		final int row;
+		final int col;
+		final double score;
+	}
+
+	private final double absThreshold;
+	private final double relThreshold;
+	private final double maxScore;
+	private final List<T> rows = new ArrayList<>();
+	private final List<T> cols = new ArrayList<>();
+	private final Map<T, Integer> colIndices = new IdentityHashMap<>();
+	private final List<Edge> edges = new ArrayList<>();
+}
@@ -202,7 +202,7 @@ public class Util {
 		} else if (isIrrelevantBsm(bsm)) {
 			return null;
 		} else {
-			System.out.printf("unknown invokedynamic bsm: %s/%s%s (tag=%d iif=%b)%n", bsm.getOwner(), bsm.getName(), bsm.getDesc(), bsm.getTag(), bsm.isInterface());
+			if (Log.isEnabled(Log.Level.DEBUG)) Log.debug("unknown invokedynamic bsm: %s/%s%s (tag=%d iif=%b)", bsm.getOwner(), bsm.getName(), bsm.getDesc(), bsm.getTag(), bsm.isInterface());
 
 			return null;
 		}
@@ -8,6 +8,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.AbstractInsnNode;
@@ -68,13 +70,23 @@ public class ClassClassifier {
 	}
 
 	public static List<RankResult<ClassInstance>> rank(ClassInstance src, ClassInstance[] dsts, ClassifierLevel level, ClassEnvironment env, double maxMismatch) {
-		return ClassifierUtil.rank(src, dsts, classifiers.getOrDefault(level, Collections.emptyList()), ClassifierUtil::checkPotentialEquality, env, maxMismatch);
+		return rank(src, dsts, level, env, maxMismatch, Integer.MAX_VALUE, 0);
+	}
+
+	public static List<RankResult<ClassInstance>> rank(ClassInstance src, ClassInstance[] dsts, ClassifierLevel level, ClassEnvironment env, double maxMismatch, int maxResults, double minBestRatio) {
+		return ClassifierUtil.rank(src, dsts, classifiers.getOrDefault(level, Collections.emptyList()), ClassifierUtil::checkPotentialEquality, env, maxMismatch, maxResults, minBestRatio);
 	}
 
 	public static List<RankResult<ClassInstance>> rankParallel(ClassInstance src, ClassInstance[] dsts, ClassifierLevel level, ClassEnvironment env, double maxMismatch) {
 		return ClassifierUtil.rankParallel(src, dsts, classifiers.getOrDefault(level, Collections.emptyList()), ClassifierUtil::checkPotentialEquality, env, maxMismatch);
 	}
 
+	public static List<RankResult<ClassInstance>> rankParallel(ClassInstance src, ClassInstance[] dsts, ClassifierLevel level, ClassEnvironment env, double maxMismatch,
+			BooleanSupplier cancelCheck, int partialLimit, Consumer<List<RankResult<ClassInstance>>> partialResultConsumer) {
+		return ClassifierUtil.rankParallel(src, dsts, classifiers.getOrDefault(level, Collections.emptyList()), ClassifierUtil::checkPotentialEquality, env, maxMismatch,
+				cancelCheck, partialLimit, partialResultConsumer);
+	}
+
 	private static final Map<ClassifierLevel, List<IClassifier<ClassInstance>>> classifiers = new EnumMap<>(ClassifierLevel.class);
 	private static final Map<ClassifierLevel, Double> maxScore = new EnumMap<>(ClassifierLevel.class);
 
@@ -435,7 +447,7 @@ public class ClassClassifier {
 				for (MethodInstance method : clsA.getMethods()) {
 					if (!method.isMatchable()) continue;
 
-					List<RankResult<MethodInstance>> ranking = MethodClassifier.rank(method, clsB.getMethods(), level, env);
+					List<RankResult<MethodInstance>> ranking = MethodClassifier.rank(method, clsB.getMethods(), level, env, Double.POSITIVE_INFINITY, 2, Matcher.getMinBestRatio(relThreshold));
 					if (Matcher.checkRank(ranking, absThreshold, relThreshold, maxScore)) match += Matcher.getScore(ranking.get(0).getScore(), maxScore);
 				}
 			}
@@ -446,7 +458,7 @@ public class ClassClassifier {
 				for (FieldInstance field : clsA.getFields()) {
 					if (!field.isMatchable()) continue;
 
-					List<RankResult<FieldInstance>> ranking = FieldClassifier.rank(field, clsB.getFields(), level, env);
+					List<RankResult<FieldInstance>> ranking = FieldClassifier.rank(field, clsB.getFields(), level, env, Double.POSITIVE_INFINITY, 2, Matcher.getMinBestRatio(relThreshold));
 					if (Matcher.checkRank(ranking, absThreshold, relThreshold, maxScore)) match += Matcher.getScore(ranking.get(0).getScore(), maxScore);
 				}
 			}
@@ -3,17 +3,23 @@ package matcher.classifier;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.BiFunction;
 import java.util.function.BiPredicate;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.ToIntBiFunction;
 import java.util.function.ToIntFunction;
-import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.objectweb.asm.Handle;
 import org.objectweb.asm.MethodVisitor;
@@ -37,6 +43,7 @@ import org.objectweb.asm.tree.VarInsnNode;
 import org.objectweb.asm.util.Textifier;
 import org.objectweb.asm.util.TraceMethodVisitor;
 
+import matcher.Log;
 import matcher.Util;
 import matcher.classifier.MatchingCache.CacheToken;
 import matcher.type.ClassEnvironment;
@@ -83,26 +90,33 @@ public class ClassifierUtil {
 		if ((a.getId().startsWith("<") || b.getId().startsWith("<")) && !a.getName().equals(b.getName())) return false; // require <clinit> and <init> to match
 
 		MethodInstance hierarchyMatch = a.getHierarchyMatch();
-		if (hierarchyMatch != null && !hierarchyMatch.getAllHierarchyMembers().contains(b)) return false;
+		if (hierarchyMatch != null && !hierarchyMatch.isHierarchyMember(b)) return false;
 
 		if (a.getType() == MethodType.LAMBDA_IMPL && b.getType() == MethodType.LAMBDA_IMPL) { // require same "outer method" for lambdas
-			boolean found = false;
+			MatchingCache cache = a.getEnv().getGlobal().getCache();
+			Boolean outerEqual = cache.get(lambdaOuterCacheToken, a, b);
 
-			maLoop: for (MethodInstance ma : a.getRefsIn()) {
-				for (MethodInstance mb : b.getRefsIn()) {
-					if (checkPotentialEquality(ma, mb)) {
-						found = true;
-						break maLoop;
-					}
-				}
+			if (outerEqual == null) { // not using compute since the check may recurse into nested lambdas
+				outerEqual = checkLambdaOuterEquality(a, b);
+				cache.put(lambdaOuterCacheToken, a, b, outerEqual);
 			}
 
-			if (!found) return false;
+			if (!outerEqual) return false;
 		}
 
 		return true;
 	}
 
+	private static boolean checkLambdaOuterEquality(MethodInstance a, MethodInstance b) {
+		for (MethodInstance ma : a.getRefsIn()) {
+			for (MethodInstance mb : b.getRefsIn()) {
+				if (checkPotentialEquality(ma, mb)) return true;
+			}
+		}
+
+		return false;
+	}
+
 	public static boolean checkPotentialEquality(FieldInstance a, FieldInstance b) {
 		if (a == b) return true;
 		if (a.getMatch() != null) return a.getMatch() == b;
@@ -367,10 +381,10 @@ public class ClassifierUtil {
 							implB.getOwner(), implB.getName(), implB.getDesc(), Util.isCallToInterface(implB),
 							env) ? COMPARED_SIMILAR : COMPARED_DISTINCT;
 				default:
-					System.out.println("unexpected impl tag: "+implA.getTag());
+					Log.debug("unexpected impl tag: %d", implA.getTag());
 				}
 			} else if (!Util.isIrrelevantBsm(a.bsm)) {
-				System.out.printf("unknown invokedynamic bsm: %s/%s%s (tag=%d iif=%b)%n", a.bsm.getOwner(), a.bsm.getName(), a.bsm.getDesc(), a.bsm.getTag(), a.bsm.isInterface());
+				if (Log.isEnabled(Log.Level.DEBUG)) Log.debug("unknown invokedynamic bsm: %s/%s%s (tag=%d iif=%b)", a.bsm.getOwner(), a.bsm.getName(), a.bsm.getDesc(), a.bsm.getTag(), a.bsm.isInterface());
 			}
 
 			// TODO: implement
@@ -694,35 +708,217 @@ public class ClassifierUtil {
 	}
 
 	public static <T extends Matchable<T>> List<RankResult<T>> rank(T src, T[] dsts, Collection<IClassifier<T>> classifiers, BiPredicate<T, T> potentialEqualityCheck, ClassEnvironment env, double maxMismatch) {
-		List<RankResult<T>> ret = new ArrayList<>(dsts.length);
+		return rank(src, dsts, classifiers, potentialEqualityCheck, env, maxMismatch, Integer.MAX_VALUE, 0);
+	}
+
+	/**
+	 * Rank dsts, returning only the best maxResults results and skipping results far below the best one.
+	 *
+	 * <p>The result equals the first maxResults entries of the full ranking, minus all results scoring below
+	 * minBestRatio times the best score. Once maxResults results have been found, further candidates are abandoned as
+	 * soon as they can't beat the worst of them anymore. Similarly minBestRatio tightens the max mismatch as better
+	 * candidates are found. Both only abandon candidates that wouldn't be part of the result.
+	 *
+	 * <p>Only top level rankings get cached, rankings done by classifiers while scoring are specific to the scored pair
+	 * and wouldn't be requested again before the cache gets cleared.
+	 */
+	public static <T extends Matchable<T>> List<RankResult<T>> rank(T src, T[] dsts, Collection<IClassifier<T>> classifiers, BiPredicate<T, T> potentialEqualityCheck, ClassEnvironment env, double maxMismatch,
+			int maxResults, double minBestRatio) {
+		if (maxResults >= dsts.length) maxResults = Integer.MAX_VALUE; // all results fit, share the cache entry with the full ranking
+
+		int[] depth = rankDepth.get();
+		boolean cache = depth[0] == 0;
+		List<RankResult<T>> ret;
+
+		if (cache) {
+			ret = env.getCache().getRanking(src, dsts, classifiers, maxMismatch, maxResults, minBestRatio);
+			if (ret != null) return ret;
+		}
+
+		depth[0]++;
+
+		try {
+			ret = rankUncached(src, dsts, classifiers, potentialEqualityCheck, env, maxMismatch, maxResults, minBestRatio);
+		} finally {
+			depth[0]--;
+		}
+
+		if (cache) env.getCache().putRanking(src, dsts, classifiers, maxMismatch, maxResults, minBestRatio, ret);
+
+		return ret;
+	}
+
+	private static <T extends Matchable<T>> List<RankResult<T>> rankUncached(T src, T[] dsts, Collection<IClassifier<T>> classifiers, BiPredicate<T, T> potentialEqualityCheck, ClassEnvironment env, double maxMismatch,
+			int maxResults, double minBestRatio) {
+		List<RankResult<T>> ret;
+		double maxWeight = 0;
+
+		for (IClassifier<T> classifier : classifiers) {
+			maxWeight += classifier.getWeight();
+		}
+
+		double[] scores = new double[classifiers.size()];
+		double bestScore = Double.NEGATIVE_INFINITY;
+
+		if (maxResults == Integer.MAX_VALUE) {
+			ret = new ArrayList<>(dsts.length);
+
+			for (T dst : dsts) {
+				double curMaxMismatch = maxMismatch;
+
+				if (minBestRatio > 0 && !ret.isEmpty()) { // score = maxWeight - mismatch
+					curMaxMismatch = Math.min(curMaxMismatch, maxWeight - bestScore * minBestRatio + epsilon);
+				}
+
+				double score = rankScore(src, dst, classifiers, potentialEqualityCheck, env, curMaxMismatch, scores);
+				if (Double.isNaN(score)) continue;
+
+				ret.add(createRankResult(dst, score, classifiers, scores));
+				bestScore = Math.max(bestScore, score);
+			}
+
+			ret.sort(Comparator.<RankResult<T>, Double>comparing(RankResult::getScore).reversed());
+		} else {
+			// keep the best results in a bounded buffer sorted by descending score, maxResults is usually tiny
+
+			ret = new ArrayList<>(maxResults + 1);
+
+			for (T dst : dsts) {
+				double curMaxMismatch = maxMismatch;
+
+				if (ret.size() == maxResults) { // the result has to beat the worst kept one, score = maxWeight - mismatch
+					curMaxMismatch = Math.min(curMaxMismatch, maxWeight - ret.get(maxResults - 1).getScore() + epsilon);
+				}
+
+				if (minBestRatio > 0 && !ret.isEmpty()) {
+					curMaxMismatch = Math.min(curMaxMismatch, maxWeight - ret.get(0).getScore() * minBestRatio + epsilon);
+				}
+
+				double score = rankScore(src, dst, classifiers, potentialEqualityCheck, env, curMaxMismatch, scores);
+				if (Double.isNaN(score)) continue;
+
+				// insert after all equal scores like a stable sort would
 
-		for (T dst : dsts) {
-			RankResult<T> result = rank(src, dst, classifiers, potentialEqualityCheck, env, maxMismatch);
-			if (result != null) ret.add(result);
+				int pos = ret.size();
+				while (pos > 0 && ret.get(pos - 1).getScore() < score) pos--;
+				if (pos >= maxResults) continue;
+
+				ret.add(pos, createRankResult(dst, score, classifiers, scores));
+				if (ret.size() > maxResults) ret.remove(maxResults);
+			}
+
+			bestScore = ret.isEmpty() ? bestScore : ret.get(0).getScore();
 		}
 
-		ret.sort(Comparator.<RankResult<T>, Double>comparing(RankResult::getScore).reversed());
+		if (minBestRatio > 0) { // drop results that got in before a better one was found
+			double minScore = bestScore * minBestRatio - epsilon; // same slack as the mismatch bound, keep borderline results for checkRank
+
+			while (!ret.isEmpty() && ret.get(ret.size() - 1).getScore() < minScore) {
+				ret.remove(ret.size() - 1);
+			}
+		}
 
 		return ret;
 	}
 
 	public static <T extends Matchable<T>> List<RankResult<T>> rankParallel(T src, T[] dsts, Collection<IClassifier<T>> classifiers, BiPredicate<T, T> potentialEqualityCheck, ClassEnvironment env, double maxMismatch) {
-		return Arrays.stream(dsts)
-				.parallel()
-				.map(dst -> rank(src, dst, classifiers, potentialEqualityCheck, env, maxMismatch))
-				.filter(Objects::nonNull)
-				.sorted(Comparator.<RankResult<T>, Double>comparing(RankResult::getScore).reversed())
-				.collect(Collectors.toList());
+		return rankParallel(src, dsts, classifiers, potentialEqualityCheck, env, maxMismatch, () -> false, 0, null);
+	}
+
+	/**
+	 * Rank dsts in parallel chunks with cancellation support and optional partial results.
+	 *
+	 * <p>After each chunk the best partialLimit results found so far get passed to partialResultConsumer, which may be
+	 * invoked from multiple threads concurrently. The ranking gets aborted with a {@link CancellationException} once
+	 * cancelCheck returns true.
+	 */
+	public static <T extends Matchable<T>> List<RankResult<T>> rankParallel(T src, T[] dsts, Collection<IClassifier<T>> classifiers, BiPredicate<T, T> potentialEqualityCheck, ClassEnvironment env, double maxMismatch,
+			BooleanSupplier cancelCheck, int partialLimit, Consumer<List<RankResult<T>>> partialResultConsumer) {
+		boolean cache = rankDepth.get()[0] == 0;
+		List<RankResult<T>> ret;
+
+		if (cache) {
+			ret = env.getCache().getRanking(src, dsts, classifiers, maxMismatch, Integer.MAX_VALUE, 0);
+			if (ret != null) return ret;
+		}
+
+		int chunkSize = Math.max(minRankChunkSize, dsts.length / (ForkJoinPool.getCommonPoolParallelism() * 8));
+		int chunkCount = (dsts.length + chunkSize - 1) / chunkSize;
+		List<List<RankResult<T>>> chunkResults = new ArrayList<>(Collections.nCopies(chunkCount, null));
+		Comparator<RankResult<T>> scoreComparator = Comparator.comparingDouble(RankResult::getScore);
+		PriorityQueue<RankResult<T>> best = new PriorityQueue<>(partialLimit + 1, scoreComparator); // min-heap, head is the worst
+
+		IntStream.range(0, chunkCount).parallel().forEach(chunk -> {
+			List<RankResult<T>> results = new ArrayList<>();
+			int[] depth = rankDepth.get(); // chunks may run on other threads
+			depth[0]++;
+
+			try {
+				for (int i = chunk * chunkSize, max = Math.min(i + chunkSize, dsts.length); i < max; i++) {
+					if (cancelCheck.getAsBoolean()) throw new CancellationException();
+
+					RankResult<T> result = rank(src, dsts[i], classifiers, potentialEqualityCheck, env, maxMismatch);
+					if (result != null) results.add(result);
+				}
+			} finally {
+				depth[0]--;
+			}
+
+			chunkResults.set(chunk, results);
+			if (partialResultConsumer == null || partialLimit <= 0) return;
+
+			List<RankResult<T>> partial;
+
+			synchronized (best) {
+				for (RankResult<T> result : results) {
+					if (best.size() < partialLimit) {
+						best.add(result);
+					} else if (result.getScore() > best.peek().getScore()) {
+						best.poll();
+						best.add(result);
+					}
+				}
+
+				partial = new ArrayList<>(best);
+			}
+
+			partial.sort(scoreComparator.reversed());
+			partialResultConsumer.accept(partial);
+		});
+
+		ret = new ArrayList<>();
+
+		for (List<RankResult<T>> results : chunkResults) { // in dsts order to keep the sorting stable
+			ret.addAll(results);
+		}
+
+		ret.sort(scoreComparator.reversed());
+		if (cache) env.getCache().putRanking(src, dsts, classifiers, maxMismatch, Integer.MAX_VALUE, 0, ret);
+
+		return ret;
 	}
 
 	private static <T extends Matchable<T>> RankResult<T> rank(T src, T dst, Collection<IClassifier<T>> classifiers, BiPredicate<T, T> potentialEqualityCheck, ClassEnvironment env, double maxMismatch) {
+		double[] scores = new double[classifiers.size()];
+		double score = rankScore(src, dst, classifiers, potentialEqualityCheck, env, maxMismatch, scores);
+
+		return Double.isNaN(score) ? null : createRankResult(dst, score, classifiers, scores);
+	}
+
+	/**
+	 * Compute the total score of dst, storing the individual classifier scores in scores.
+	 *
+	 * @return the total score or NaN if dst isn't a potential match or exceeds maxMismatch
+	 */
+	private static <T extends Matchable<T>> double rankScore(T src, T dst, Collection<IClassifier<T>> classifiers, BiPredicate<T, T> potentialEqualityCheck, ClassEnvironment env, double maxMismatch,
+			double[] scores) {
 		assert src.getEnv() != dst.getEnv();
 
-		if (!potentialEqualityCheck.test(src, dst)) return null;
+		if (!potentialEqualityCheck.test(src, dst)) return Double.NaN;
 
 		double score = 0;
 		double mismatch = 0;
-		List<ClassifierResult<T>> results = new ArrayList<>(classifiers.size());
+		int i = 0;
 
 		for (IClassifier<T> classifier : classifiers) {
 			double cScore = classifier.getScore(src, dst, env);
@@ -732,10 +928,21 @@ public class ClassifierUtil {
 			double weightedScore = cScore * weight;
 
 			mismatch += weight - weightedScore;
-			if (mismatch >= maxMismatch) return null;
+			if (mismatch >= maxMismatch) return Double.NaN;
 
 			score += weightedScore;
-			results.add(new ClassifierResult<>(classifier, cScore));
+			scores[i++] = cScore;
+		}
+
+		return score;
+	}
+
+	private static <T extends Matchable<T>> RankResult<T> createRankResult(T dst, double score, Collection<IClassifier<T>> classifiers, double[] scores) {
+		List<ClassifierResult<T>> results = new ArrayList<>(classifiers.size());
+		int i = 0;
+
+		for (IClassifier<T> classifier : classifiers) {
+			results.add(new ClassifierResult<>(classifier, scores[i++]));
 		}
 
 		return new RankResult<>(dst, score, results);
@@ -859,6 +1066,9 @@ public class ClassifierUtil {
 	}
 
 	private static final double epsilon = 1e-6;
+	private static final int minRankChunkSize = 64;
+	private static final ThreadLocal<int[]> rankDepth = ThreadLocal.withInitial(() -> new int[1]); // nesting of rankings on the current thread
 
 	private static final CacheToken<int[]> ilMapCacheToken = new CacheToken<>();
+	private static final CacheToken<Boolean> lambdaOuterCacheToken = new CacheToken<>();
 }
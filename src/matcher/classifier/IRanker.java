@@ -5,5 +5,5 @@ import java.util.List;
 import matcher.type.ClassEnvironment;
 
 public interface IRanker<T> {
-	List<RankResult<T>> rank(T src, T[] dsts, ClassifierLevel level, ClassEnvironment env, double maxMismatch);
+	List<RankResult<T>> rank(T src, T[] dsts, ClassifierLevel level, ClassEnvironment env, double maxMismatch, int maxResults, double minBestRatio);
 }
\ No newline at end of file
@@ -1,9 +1,14 @@
 package matcher.classifier;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
 
+import matcher.type.MatchStatus;
 import matcher.type.Matchable;
 
 public class MatchingCache {
@@ -17,8 +22,47 @@ public class MatchingCache {
 		return (T) cache.computeIfAbsent(new CacheKey<U>(token, a, b), k -> f.apply((U) k.a, (U) k.b));
 	}
 
+	public <T, U extends Matchable<U>> void put(CacheToken<T> token, U a, U b, T value) {
+		cache.put(new CacheKey<U>(token, a, b), value);
+	}
+
+	/**
+	 * Get a ranking stored by {@link #putRanking} for the same source, candidates, classifiers and ranking limits.
+	 *
+	 * <p>Rankings are stored per source and candidate owner, i.e. per class pair for members and per method pair for
+	 * vars, so ranking a member against the members of different classes doesn't evict the other entries.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Matchable<T>> List<RankResult<T>> getRanking(T src, T[] dsts, Collection<IClassifier<T>> classifiers, double maxMismatch, int maxResults, double minBestRatio) {
+		RankingEntry entry = rankings.get(new RankingKey(src, getCandidateOwner(dsts), classifiers, maxMismatch, maxResults, minBestRatio));
+		if (entry == null || !Arrays.equals(entry.dsts, dsts)) return null;
+
+		return (List<RankResult<T>>) (List<?>) entry.ranking;
+	}
+
+	public <T extends Matchable<T>> void putRanking(T src, T[] dsts, Collection<IClassifier<T>> classifiers, double maxMismatch, int maxResults, double minBestRatio, List<RankResult<T>> ranking) {
+		rankings.put(new RankingKey(src, getCandidateOwner(dsts), classifiers, maxMismatch, maxResults, minBestRatio), new RankingEntry(dsts.clone(), Collections.unmodifiableList(ranking)));
+	}
+
+	private static Matchable<?> getCandidateOwner(Matchable<?>[] dsts) {
+		return dsts.length > 0 ? dsts[0].getOwner() : null; // null for classes
+	}
+
+	public MatchStatus getMatchStatus(Matchable<?> m) {
+		MatchStatus ret = matchStatus.get(m);
+
+		if (ret == null) { // not using computeIfAbsent since class statuses depend on member statuses
+			ret = MatchStatus.compute(m);
+			matchStatus.put(m, ret);
+		}
+
+		return ret;
+	}
+
 	public void clear() {
 		cache.clear();
+		rankings.clear();
+		matchStatus.clear();
 	}
 
 	public static final class CacheToken<t> {}
@@ -49,5 +93,50 @@ public class MatchingCache {
 		final T b;
 	}
 
+	private static final class RankingKey {
+		RankingKey(Matchable<?> src, Matchable<?> candidateOwner, Collection<?> classifiers, double maxMismatch, int maxResults, double minBestRatio) {
+			this.src = src;
+			this.candidateOwner = candidateOwner;
+			this.classifiers = classifiers;
+			this.maxMismatch = maxMismatch;
+			this.maxResults = maxResults;
+			this.minBestRatio = minBestRatio;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(src) ^ System.identityHashCode(candidateOwner) * 31 ^ System.identityHashCode(classifiers) ^ Double.hashCode(maxMismatch) ^ maxResults ^ Double.hashCode(minBestRatio);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj.getClass() != RankingKey.class) return false;
+
+			RankingKey o = (RankingKey) obj;
+
+			return src == o.src && candidateOwner == o.candidateOwner && classifiers == o.classifiers && Double.compare(maxMismatch, o.maxMismatch) == 0 && maxResults == o.maxResults
+					&& Double.compare(minBestRatio, o.minBestRatio) == 0;
+		}
+
+		final Matchable<?> src;
+		final Matchable<?> candidateOwner;
+		final Collection<?> classifiers;
+		final double maxMismatch;
+		final int maxResults;
+		final double minBestRatio;
+	}
+
+	private static final class RankingEntry {
+		RankingEntry(Object[] dsts, List<? extends RankResult<?>> ranking) {
+			this.dsts = dsts;
+			this.ranking = ranking;
+		}
+
+		final Object[] dsts;
+		final List<? extends RankResult<?>> ranking;
+	}
+
 	private final Map<CacheKey<?>, Object> cache = new ConcurrentHashMap<>();
+	private final Map<RankingKey, RankingEntry> rankings = new ConcurrentHashMap<>();
+	private final Map<Matchable<?>, MatchStatus> matchStatus = new ConcurrentHashMap<>();
 }
@@ -65,6 +65,10 @@ public class MethodClassifier {
 	}
 
 	public static List<RankResult<MethodInstance>> rank(MethodInstance src, MethodInstance[] dsts, ClassifierLevel level, ClassEnvironment env, double maxMismatch) {
+		return rank(src, dsts, level, env, maxMismatch, Integer.MAX_VALUE, 0);
+	}
+
+	public static List<RankResult<MethodInstance>> rank(MethodInstance src, MethodInstance[] dsts, ClassifierLevel level, ClassEnvironment env, double maxMismatch, int maxResults, double minBestRatio) {
 		if (src.hasMatch()) { // already matched,  limit dsts to the match
 			if (!Arrays.asList(dsts).contains(src.getMatch())) {
 				return Collections.emptyList();
@@ -75,14 +79,13 @@ public class MethodClassifier {
 			MethodInstance matched = src.getHierarchyMatch();
 
 			if (matched != null) {
-				Set<MethodInstance> dstHierarchyMembers = matched.getAllHierarchyMembers();
 				MethodInstance[] newDsts = new MethodInstance[dsts.length];
 				int writeIdx = 0;
 
 				for (int readIdx = 0; readIdx < dsts.length; readIdx++) {
 					MethodInstance m = dsts[readIdx];
 
-					if (dstHierarchyMembers.contains(m)) {
+					if (matched.isHierarchyMember(m)) {
 						newDsts[writeIdx++] = m;
 					}
 				}
@@ -94,7 +97,7 @@ public class MethodClassifier {
 			}
 		}
 
-		return ClassifierUtil.rank(src, dsts, classifiers.getOrDefault(level, Collections.emptyList()), ClassifierUtil::checkPotentialEquality, env, maxMismatch);
+		return ClassifierUtil.rank(src, dsts, classifiers.getOrDefault(level, Collections.emptyList()), ClassifierUtil::checkPotentialEquality, env, maxMismatch, maxResults, minBestRatio);
 	}
 
 	private static final Map<ClassifierLevel, List<IClassifier<MethodInstance>>> classifiers = new EnumMap<>(ClassifierLevel.class);
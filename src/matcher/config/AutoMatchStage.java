@@ -0,0 +1,145 @@
+package matcher.config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import matcher.classifier.ClassifierLevel;
+
+/**
+ * One step of the auto matching pipeline, running the passes of its kinds at a fixed classifier level.
+ *
+ * <p>The passes are repeated in order until each of them ran once more without finding a match since the last match
+ * of any of them, or until maxIterations rounds are done if that is positive. A positive parallelism runs the passes
+ * on a dedicated pool with that many threads instead of the shared one.
+ *
+ * <p>The string form is kinds:level:absThreshold:relThreshold[:maxIterations[:parallelism]] with comma separated
+ * kinds, e.g. methods,fields,classes:Full:0.85:0.085.
+ */
+public final class AutoMatchStage {
+	public enum Kind {
+		CLASSES, METHODS, FIELDS, METHOD_ARGS, METHOD_VARS;
+
+		public String getId() {
+			return name().toLowerCase(Locale.ENGLISH).replace('_', '-');
+		}
+
+		public static Kind parse(String id) {
+			for (Kind kind : values()) {
+				if (kind.getId().equals(id)) return kind;
+			}
+
+			throw new IllegalArgumentException("invalid auto match stage kind: "+id);
+		}
+	}
+
+	public AutoMatchStage(List<Kind> kinds, ClassifierLevel level, double absThreshold, double relThreshold, int maxIterations, int parallelism) {
+		if (kinds.isEmpty()) throw new IllegalArgumentException("no kinds");
+		if (absThreshold < 0 || absThreshold > 1 || relThreshold < 0 || relThreshold > 1) throw new IllegalArgumentException("threshold out of range");
+
+		this.kinds = Collections.unmodifiableList(new ArrayList<>(kinds));
+		this.level = level;
+		this.absThreshold = absThreshold;
+		this.relThreshold = relThreshold;
+		this.maxIterations = Math.max(0, maxIterations);
+		this.parallelism = Math.max(0, parallelism);
+	}
+
+	public static AutoMatchStage parse(String str) {
+		String[] parts = str.trim().split(":");
+		if (parts.length < 4 || parts.length > 6) throw new IllegalArgumentException("invalid auto match stage: "+str);
+
+		Set<Kind> kinds = EnumSet.noneOf(Kind.class);
+		List<Kind> orderedKinds = new ArrayList<>();
+
+		for (String id : parts[0].split(",")) {
+			Kind kind = Kind.parse(id.trim());
+			if (kinds.add(kind)) orderedKinds.add(kind);
+		}
+
+		try {
+			return new AutoMatchStage(orderedKinds,
+					ClassifierLevel.valueOf(parts[1].trim()),
+					Double.parseDouble(parts[2]),
+					Double.parseDouble(parts[3]),
+					parts.length > 4 ? Integer.parseInt(parts[4].trim()) : 0,
+					parts.length > 5 ? Integer.parseInt(parts[5].trim()) : 0);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("invalid auto match stage: "+str, e);
+		}
+	}
+
+	/**
+	 * Get the default pipeline: initial class matching, the member and class passes at all further levels and finally
+	 * the arg and var passes.
+	 */
+	public static List<AutoMatchStage> getDefaultPipeline() {
+		return defaultPipeline;
+	}
+
+	public List<Kind> getKinds() {
+		return kinds;
+	}
+
+	public ClassifierLevel getLevel() {
+		return level;
+	}
+
+	public double getAbsThreshold() {
+		return absThreshold;
+	}
+
+	public double getRelThreshold() {
+		return relThreshold;
+	}
+
+	/**
+	 * Get the maximum number of rounds over all kinds, 0 for no limit.
+	 */
+	public int getMaxIterations() {
+		return maxIterations;
+	}
+
+	/**
+	 * Get the number of threads for this stage, 0 to use the shared pool.
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder ret = new StringBuilder();
+		ret.append(kinds.stream().map(Kind::getId).collect(Collectors.joining(",")));
+		ret.append(':').append(level.name());
+		ret.append(':').append(absThreshold);
+		ret.append(':').append(relThreshold);
+
+		if (maxIterations != 0 || parallelism != 0) ret.append(':').append(maxIterations);
+		if (parallelism != 0) ret.append(':').append(parallelism);
+
+		return ret.toString();
+	}
+
+	public static final double defaultAbsThreshold = 0.85;
+	public static final double defaultRelThreshold = 0.085;
+
+	private static final List<AutoMatchStage> defaultPipeline = Collections.unmodifiableList(Arrays.asList(
+			new AutoMatchStage(Arrays.asList(Kind.CLASSES), ClassifierLevel.Initial, defaultAbsThreshold, defaultRelThreshold, 2, 0),
+			new AutoMatchStage(Arrays.asList(Kind.METHODS, Kind.FIELDS, Kind.CLASSES), ClassifierLevel.Intermediate, defaultAbsThreshold, defaultRelThreshold, 0, 0),
+			new AutoMatchStage(Arrays.asList(Kind.METHODS, Kind.FIELDS, Kind.CLASSES), ClassifierLevel.Full, defaultAbsThreshold, defaultRelThreshold, 0, 0),
+			new AutoMatchStage(Arrays.asList(Kind.METHODS, Kind.FIELDS, Kind.CLASSES), ClassifierLevel.Extra, defaultAbsThreshold, defaultRelThreshold, 0, 0),
+			new AutoMatchStage(Arrays.asList(Kind.METHOD_ARGS, Kind.METHOD_VARS), ClassifierLevel.Full, defaultAbsThreshold, defaultRelThreshold, 0, 0)));
+
+	private final List<Kind> kinds;
+	private final ClassifierLevel level;
+	private final double absThreshold;
+	private final double relThreshold;
+	private final int maxIterations;
+	private final int parallelism;
+}
@@ -23,11 +23,20 @@ public class ProjectConfig {
 				prefs.get(nonObfuscatedClassPatternAKey, ""),
 				prefs.get(nonObfuscatedClassPatternBKey, ""),
 				prefs.get(nonObfuscatedMemberPatternAKey, ""),
-				prefs.get(nonObfuscatedMemberPatternBKey, ""));
+				prefs.get(nonObfuscatedMemberPatternBKey, ""),
+				loadAutoMatchStages(prefs));
 	}
 
 	public ProjectConfig(List<Path> pathsA, List<Path> pathsB, List<Path> classPathA, List<Path> classPathB, List<Path> sharedClassPath, boolean inputsBeforeClassPath,
 			String nonObfuscatedClassesPatternA, String nonObfuscatedClassesPatternB, String nonObfuscatedMemberPatternA, String nonObfuscatedMemberPatternB) {
+		this(pathsA, pathsB, classPathA, classPathB, sharedClassPath, inputsBeforeClassPath,
+				nonObfuscatedClassesPatternA, nonObfuscatedClassesPatternB, nonObfuscatedMemberPatternA, nonObfuscatedMemberPatternB,
+				AutoMatchStage.getDefaultPipeline());
+	}
+
+	public ProjectConfig(List<Path> pathsA, List<Path> pathsB, List<Path> classPathA, List<Path> classPathB, List<Path> sharedClassPath, boolean inputsBeforeClassPath,
+			String nonObfuscatedClassesPatternA, String nonObfuscatedClassesPatternB, String nonObfuscatedMemberPatternA, String nonObfuscatedMemberPatternB,
+			List<AutoMatchStage> autoMatchStages) {
 		this.pathsA = pathsA;
 		this.pathsB = pathsB;
 		this.classPathA = classPathA;
@@ -38,6 +47,18 @@ public class ProjectConfig {
 		this.nonObfuscatedClassPatternB = nonObfuscatedClassesPatternB;
 		this.nonObfuscatedMemberPatternA = nonObfuscatedMemberPatternA;
 		this.nonObfuscatedMemberPatternB = nonObfuscatedMemberPatternB;
+		this.autoMatchStages = autoMatchStages;
+	}
+
+	private static List<AutoMatchStage> loadAutoMatchStages(Preferences prefs) throws BackingStoreException {
+		try {
+			List<AutoMatchStage> ret = Config.loadList(prefs, autoMatchStagesKey, AutoMatchStage::parse);
+
+			return ret.isEmpty() ? AutoMatchStage.getDefaultPipeline() : ret;
+		} catch (IllegalArgumentException e) {
+			e.printStackTrace();
+			return AutoMatchStage.getDefaultPipeline();
+		}
 	}
 
 	public List<Path> getPathsA() {
@@ -80,9 +101,17 @@ public class ProjectConfig {
 		return nonObfuscatedMemberPatternB;
 	}
 
+	/**
+	 * Get the auto matching pipeline run by auto match all.
+	 */
+	public List<AutoMatchStage> getAutoMatchStages() {
+		return autoMatchStages;
+	}
+
 	public boolean isValid() {
 		return !pathsA.isEmpty()
 				&& !pathsB.isEmpty()
+				&& !autoMatchStages.isEmpty()
 				&& Collections.disjoint(pathsA, pathsB)
 				&& Collections.disjoint(pathsA, sharedClassPath)
 				&& Collections.disjoint(pathsB, sharedClassPath)
@@ -121,6 +150,7 @@ public class ProjectConfig {
 		prefs.put(nonObfuscatedClassPatternBKey, nonObfuscatedClassPatternB);
 		prefs.put(nonObfuscatedMemberPatternAKey, nonObfuscatedMemberPatternA);
 		prefs.put(nonObfuscatedMemberPatternBKey, nonObfuscatedMemberPatternB);
+		Config.saveList(prefs.node(autoMatchStagesKey), autoMatchStages);
 	}
 
 	private static final String pathsAKey = "paths-a";
@@ -133,6 +163,7 @@ public class ProjectConfig {
 	private static final String nonObfuscatedClassPatternBKey = "non-obfuscated-class-pattern-b";
 	private static final String nonObfuscatedMemberPatternAKey = "non-obfuscated-member-pattern-a";
 	private static final String nonObfuscatedMemberPatternBKey = "non-obfuscated-member-pattern-b";
+	private static final String autoMatchStagesKey = "auto-match-stages";
 
 	private final List<Path> pathsA;
 	private final List<Path> pathsB;
@@ -144,4 +175,5 @@ public class ProjectConfig {
 	private final String nonObfuscatedClassPatternB;
 	private final String nonObfuscatedMemberPatternA;
 	private final String nonObfuscatedMemberPatternB;
+	private final List<AutoMatchStage> autoMatchStages;
 }
@@ -12,6 +12,7 @@ import javafx.scene.control.Button;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.StackPane;
 
+import matcher.MatchBatch;
 import matcher.classifier.ClassifierLevel;
 import matcher.classifier.FieldClassifier;
 import matcher.classifier.MethodClassifier;
@@ -210,7 +211,7 @@ public class BottomPane extends StackPane implements IGuiComponent {
 
 		final double minMethodScore = MethodClassifier.getMaxScore(ClassifierLevel.Full) - 1e-6;
 		Map<MethodInstance, MethodInstance> matchedMethods = new IdentityHashMap<>();
-		boolean matchedAnyMethods = false;
+		MatchBatch batch = new MatchBatch(gui.getMatcher());
 
 		for (MethodInstance m : clsA.getMethods()) {
 			if (m.hasMatch() || !m.isMatchable()) continue;
@@ -227,13 +228,11 @@ public class BottomPane extends StackPane implements IGuiComponent {
 		for (Map.Entry<MethodInstance, MethodInstance> entry : matchedMethods.entrySet()) {
 			if (entry.getValue() == null) continue;
 
-			gui.getMatcher().match(entry.getValue(), entry.getKey());
-			matchedAnyMethods = true;
+			batch.match(entry.getValue(), entry.getKey());
 		}
 
 		final double minFieldScore = FieldClassifier.getMaxScore(ClassifierLevel.Full) - 1e-6;
 		Map<FieldInstance, FieldInstance> matchedFields = new IdentityHashMap<>();
-		boolean matchedAnyFields = false;
 
 		for (FieldInstance m : clsA.getFields()) {
 			if (m.hasMatch() || !m.isMatchable()) continue;
@@ -250,18 +249,10 @@ public class BottomPane extends StackPane implements IGuiComponent {
 		for (Map.Entry<FieldInstance, FieldInstance> entry : matchedFields.entrySet()) {
 			if (entry.getValue() == null) continue;
 
-			gui.getMatcher().match(entry.getValue(), entry.getKey());
-			matchedAnyFields = true;
+			batch.match(entry.getValue(), entry.getKey());
 		}
 
-		if (!matchedAnyMethods && !matchedAnyFields) return;
-
-		Set<MatchType> matchedTypes = EnumSet.noneOf(MatchType.class);
-
-		if (matchedAnyMethods) matchedTypes.add(MatchType.Method);
-		if (matchedAnyFields) matchedTypes.add(MatchType.Field);
-
-		gui.onMatchChange(matchedTypes);
+		gui.applyBatch(batch);
 	}
 
 	private boolean canUnmatchClass(ClassInstance cls) {
@@ -317,6 +308,7 @@ public class BottomPane extends StackPane implements IGuiComponent {
 			if (!newValue && !cls.hasPotentialMatch()) return;
 
 			cls.setMatchable(newValue);
+			gui.getMatcher().invalidateCache(cls);
 			gui.onMatchChange(EnumSet.allOf(MatchType.class));
 			return;
 		}
@@ -329,6 +321,7 @@ public class BottomPane extends StackPane implements IGuiComponent {
 			if (!newValue && !member.hasPotentialMatch()) return;
 
 			if (member.setMatchable(newValue)) {
+				gui.getMatcher().invalidateCache(member);
 				gui.onMatchChange(member instanceof MethodInstance ? EnumSet.of(MatchType.Method, MatchType.MethodVar) : EnumSet.of(MatchType.Field));
 			}
 
@@ -342,6 +335,7 @@ public class BottomPane extends StackPane implements IGuiComponent {
 			if (!newValue && !var.hasPotentialMatch()) return;
 
 			var.setMatchable(!var.isMatchable());
+			gui.getMatcher().invalidateCache(var);
 			gui.onMatchChange(EnumSet.of(MatchType.MethodVar));
 			return;
 		}
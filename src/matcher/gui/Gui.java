@@ -22,6 +22,7 @@ import javafx.geometry.Insets;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
+import javafx.scene.control.Button;
 import javafx.scene.control.ButtonType;
 import javafx.scene.control.Label;
 import javafx.scene.control.ProgressBar;
@@ -38,6 +39,8 @@ import javafx.stage.Stage;
 import javafx.stage.StageStyle;
 import javafx.stage.Window;
 
+import matcher.CancellationToken;
+import matcher.MatchBatch;
 import matcher.Matcher;
 import matcher.NameType;
 import matcher.gui.menu.MainMenuBar;
@@ -247,6 +250,15 @@ public class Gui extends Application {
 		}
 	}
 
+	/**
+	 * Apply batch and notify the components once about all affected match types.
+	 */
+	public void applyBatch(MatchBatch batch) {
+		Set<MatchType> types = batch.apply();
+
+		if (!types.isEmpty()) onMatchChange(types);
+	}
+
 	public static <T> CompletableFuture<T> runAsyncTask(Callable<T> task) {
 		Task<T> jfxTask = new Task<T>() {
 			@Override
@@ -271,24 +283,52 @@ public class Gui extends Application {
 	}
 
 	public void runProgressTask(String labelText, Consumer<DoubleConsumer> task, Runnable onSuccess, Consumer<Throwable> onError) {
+		runProgressTask(labelText, task, onSuccess, onError, null);
+	}
+
+	/**
+	 * Run task with a modal progress dialog, offering to cancel it through cancelToken if present.
+	 *
+	 * <p>The dialog stays open until the task has stopped, onSuccess also runs after a cancelled task returned.
+	 */
+	public void runProgressTask(String labelText, Consumer<DoubleConsumer> task, Runnable onSuccess, Consumer<Throwable> onError, CancellationToken cancelToken) {
 		Stage stage = new Stage(StageStyle.UTILITY);
 		stage.initOwner(this.scene.getWindow());
 		VBox pane = new VBox(GuiConstants.PADDING);
 
 		stage.setScene(new Scene(pane));
 		stage.initModality(Modality.APPLICATION_MODAL);
-		stage.setOnCloseRequest(event -> event.consume());
 		stage.setResizable(false);
 		stage.setTitle("Operation progress");
 
 		pane.setPadding(new Insets(GuiConstants.PADDING));
 
-		pane.getChildren().add(new Label(labelText));
+		Label label = new Label(labelText);
+		pane.getChildren().add(label);
 
 		ProgressBar progress = new ProgressBar(0);
 		progress.setPrefWidth(400);
 		pane.getChildren().add(progress);
 
+		if (cancelToken != null) {
+			Button cancelButton = new Button("Cancel");
+			pane.getChildren().add(cancelButton);
+
+			Runnable cancel = () -> {
+				cancelToken.cancel();
+				cancelButton.setDisable(true);
+				label.setText(labelText+" (cancelling)");
+			};
+
+			cancelButton.setOnAction(event -> cancel.run());
+			stage.setOnCloseRequest(event -> {
+				event.consume();
+				cancel.run();
+			});
+		} else {
+			stage.setOnCloseRequest(event -> event.consume());
+		}
+
 		stage.show();
 
 		Task<Void> jfxTask = new Task<Void>() {
@@ -7,7 +7,11 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 
+import javafx.application.Platform;
 import javafx.scene.control.ListView;
 import javafx.scene.control.SplitPane;
 import javafx.scene.control.TextField;
@@ -300,20 +304,7 @@ public class MatchPaneDst extends SplitPane implements IFwdGuiComponent, ISelect
 	}
 
 	private void updateResults(Matchable<?> oldSelection) {
-		List<RankResult<? extends Matchable<?>>> newItems = new ArrayList<>(rankResults.size());
-		String filterText = filterField.getText().toLowerCase(Locale.ENGLISH);
-
-		if (filterText.isBlank()) {
-			newItems.addAll(rankResults);
-		} else {
-			for (RankResult<? extends Matchable<?>> item : rankResults) {
-				Matchable<?> matchable = item.getSubject();
-				if (matchable.getDisplayName(gui.getNameType(), matchable instanceof ClassInstance).toLowerCase(Locale.ENGLISH).contains(filterText)) {
-					newItems.add(item);
-				}
-			}
-		}
-
+		List<RankResult<? extends Matchable<?>>> newItems = filterResults(rankResults);
 		RankResult<? extends Matchable<?>> best;
 
 		if (!newItems.isEmpty()) {
@@ -328,7 +319,7 @@ public class MatchPaneDst extends SplitPane implements IFwdGuiComponent, ISelect
 
 		suppressChangeEvents = true;
 
-		matchList.getItems().setAll(newItems);
+		setItems(newItems);
 
 		if (matchList.getSelectionModel().isEmpty()) {
 			matchList.getSelectionModel().select(best);
@@ -341,6 +332,56 @@ public class MatchPaneDst extends SplitPane implements IFwdGuiComponent, ISelect
 		suppressChangeEvents = false;
 	}
 
+	/**
+	 * Show intermediate results of an ongoing ranking without selecting the best one yet.
+	 */
+	private void showPartialResults(List<? extends RankResult<? extends Matchable<?>>> results) {
+		List<RankResult<? extends Matchable<?>>> newItems = filterResults(results);
+
+		if (gui.isSortMatchesAlphabetically()) {
+			newItems.sort(getNameComparator());
+		}
+
+		suppressChangeEvents = true;
+		setItems(newItems);
+		suppressChangeEvents = false;
+	}
+
+	private List<RankResult<? extends Matchable<?>>> filterResults(List<? extends RankResult<? extends Matchable<?>>> results) {
+		List<RankResult<? extends Matchable<?>>> ret = new ArrayList<>(results.size());
+		String filterText = filterField.getText().toLowerCase(Locale.ENGLISH);
+
+		if (filterText.isBlank()) {
+			ret.addAll(results);
+		} else {
+			for (RankResult<? extends Matchable<?>> item : results) {
+				Matchable<?> matchable = item.getSubject();
+				if (matchable.getDisplayName(gui.getNameType(), matchable instanceof ClassInstance).toLowerCase(Locale.ENGLISH).contains(filterText)) {
+					ret.add(item);
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Replace the list items while keeping the selected subject selected.
+	 */
+	private void setItems(List<RankResult<? extends Matchable<?>>> items) {
+		RankResult<? extends Matchable<?>> selected = matchList.getSelectionModel().getSelectedItem();
+
+		matchList.getItems().setAll(items);
+		if (selected == null) return;
+
+		for (RankResult<? extends Matchable<?>> item : items) {
+			if (item.getSubject() == selected.getSubject()) {
+				matchList.getSelectionModel().select(item);
+				break;
+			}
+		}
+	}
+
 	private class SrcListener implements IGuiComponent {
 		@Override
 		public void onClassSelect(ClassInstance cls) {
@@ -380,6 +421,9 @@ public class MatchPaneDst extends SplitPane implements IFwdGuiComponent, ISelect
 
 			oldSrcSelection = newSrcSelection;
 
+			final int cTaskId = ++taskId; // also cancels the previous ranking
+			BooleanSupplier cancelCheck = () -> taskId != cTaskId;
+
 			rankResults.clear();
 			suppressChangeEvents = true;
 			matchList.getItems().clear();
@@ -395,7 +439,23 @@ public class MatchPaneDst extends SplitPane implements IFwdGuiComponent, ISelect
 				return;
 			} else if (newSrcSelection instanceof ClassInstance) { // unmatched class or no member/method var selected
 				ClassInstance cls = (ClassInstance) newSrcSelection;
-				ranker = () -> ClassClassifier.rankParallel(cls, cmpClasses.toArray(new ClassInstance[0]), matchLevel, env, maxMismatch);
+				ClassInstance[] cmp = cmpClasses.toArray(new ClassInstance[0]);
+				AtomicReference<List<RankResult<ClassInstance>>> pendingPartial = new AtomicReference<>();
+
+				Consumer<List<RankResult<ClassInstance>>> partialResultConsumer = partial -> {
+					// coalesce updates, only the latest partial result is relevant
+					if (pendingPartial.getAndSet(partial) != null) return;
+
+					Platform.runLater(() -> {
+						List<RankResult<ClassInstance>> res = pendingPartial.getAndSet(null);
+
+						if (taskId == cTaskId && rankResults.isEmpty()) { // the final result wasn't applied yet
+							showPartialResults(res);
+						}
+					});
+				};
+
+				ranker = () -> ClassClassifier.rankParallel(cls, cmp, matchLevel, env, maxMismatch, cancelCheck, partialResultLimit, partialResultConsumer);
 			} else if (newSrcSelection instanceof MethodInstance) { // unmatched method or no method var selected
 				MethodInstance method = (MethodInstance) newSrcSelection;
 				ranker = () -> MethodClassifier.rank(method, method.getCls().getMatch().getMethods(), matchLevel, env, maxMismatch);
@@ -411,18 +471,20 @@ public class MatchPaneDst extends SplitPane implements IFwdGuiComponent, ISelect
 				throw new IllegalStateException();
 			}
 
-			final int cTaskId = ++taskId;
-
 			// update matches list
 			Gui.runAsyncTask(ranker)
 			.whenComplete((res, exc) -> {
-				if (exc != null) {
+				if (taskId != cTaskId) { // superseded, cancelled rankings end up here too
+					return;
+				} else if (exc != null) {
 					exc.printStackTrace();
-				} else if (taskId == cTaskId) {
+				} else {
 					assert rankResults.isEmpty();
 					rankResults.addAll(res);
 
-					updateResults(oldDstSelection);
+					// a partial result may have been selected already
+					RankResult<? extends Matchable<?>> selected = matchList.getSelectionModel().getSelectedItem();
+					updateResults(selected != null ? selected.getSubject() : oldDstSelection);
 					oldDstSelection = null;
 
 					if (matchChangeTypes != null) {
@@ -452,11 +514,13 @@ public class MatchPaneDst extends SplitPane implements IFwdGuiComponent, ISelect
 			return ret;
 		}
 
-		private int taskId;
+		private volatile int taskId;
 		private Matchable<?> oldSrcSelection;
 		private Matchable<?> oldDstSelection;
 	}
 
+	private static final int partialResultLimit = 100;
+
 	private final Gui gui;
 	private final MatchPaneSrc srcPane;
 	private final Collection<IGuiComponent> components = new ArrayList<>();
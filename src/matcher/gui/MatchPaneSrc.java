@@ -3,12 +3,15 @@ package matcher.gui;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import javafx.geometry.Orientation;
 import javafx.scene.Node;
 import javafx.scene.control.ListView;
@@ -21,6 +24,7 @@ import matcher.Util;
 import matcher.gui.Gui.SortKey;
 import matcher.type.ClassInstance;
 import matcher.type.FieldInstance;
+import matcher.type.MatchStatus;
 import matcher.type.MatchType;
 import matcher.type.Matchable;
 import matcher.type.MemberInstance;
@@ -31,6 +35,7 @@ public class MatchPaneSrc extends SplitPane implements IFwdGuiComponent, ISelect
 	public MatchPaneSrc(Gui gui) {
 		this.gui = gui;
 
+		gui.getMatcher().addMatchChangeListener(similarityCache::onMatchChange);
 		init();
 	}
 
@@ -178,7 +183,7 @@ public class MatchPaneSrc extends SplitPane implements IFwdGuiComponent, ISelect
 	private String getCellStyle(Matchable<?> item) {
 		if (gui.isUseDiffColors()) {
 			final float epsilon = 1e-5f;
-			float similarity = item.getSimilarity();
+			float similarity = similarityCache.get(item);
 
 			if (similarity < epsilon) {
 				return "-fx-text-fill: darkred;";
@@ -206,11 +211,13 @@ public class MatchPaneSrc extends SplitPane implements IFwdGuiComponent, ISelect
 				return String.format("-fx-text-fill: #%02x%02x%02x", (int) (red * 255), (int) (green * 255), (int) (blue * 255));
 			}
 		} else {
-			if (!item.hasPotentialMatch()) {
+			MatchStatus status = item.getMatchStatus();
+
+			if (!status.hasPotentialMatch()) {
 				return "-fx-text-fill: dimgray;";
-			} else if (item.getMatch() == null) {
+			} else if (!status.hasMatch()) {
 				return "-fx-text-fill: darkred;";
-			} else if (!item.isFullyMatched(false)) { // TODO: change recursive to true once arg+var matching is further implemented
+			} else if (!status.isFullyMatched(false)) { // TODO: change recursive to true once arg+var matching is further implemented
 				return "-fx-text-fill: chocolate;";
 			} else {
 				return "-fx-text-fill: darkgreen;";
@@ -301,6 +308,7 @@ public class MatchPaneSrc extends SplitPane implements IFwdGuiComponent, ISelect
 
 	@Override
 	public void onProjectChange() {
+		similarityCache.clear();
 		updateLists(true, true);
 
 		IFwdGuiComponent.super.onProjectChange();
@@ -314,22 +322,7 @@ public class MatchPaneSrc extends SplitPane implements IFwdGuiComponent, ISelect
 
 			((SplitPane) getItems().get(0)).getItems().set(0, createClassList());
 
-			updateLists(true, true);
-
-			if (selected != null) {
-				if (useClassTree) {
-					for (TreeItem<Object> pkgItem : classTree.getRoot().getChildren()) {
-						for (TreeItem<Object> item : pkgItem.getChildren()) {
-							if (item.getValue() == selected) {
-								classTree.getSelectionModel().select(item);
-								break;
-							}
-						}
-					}
-				} else {
-					classList.getSelectionModel().select(selected);
-				}
-			}
+			updateLists(true, true, selected);
 		} else {
 			updateLists(true, true);
 		}
@@ -338,20 +331,22 @@ public class MatchPaneSrc extends SplitPane implements IFwdGuiComponent, ISelect
 	}
 
 	private void updateLists(boolean updateContents, boolean updateMembers) {
-		Comparator<ClassInstance> clsComparator = getClassComparator();
-		Comparator<MemberInstance<?>> memberComparator = getMemberComparator();
+		updateLists(updateContents, updateMembers, getSelectedClass());
+	}
 
-		ClassInstance selClass = getSelectedClass();
+	private void updateLists(boolean updateContents, boolean updateMembers, ClassInstance selClass) {
+		Comparator<MemberInstance<?>> memberComparator = getMemberComparator();
 		MemberInstance<?> selMember = memberList.getSelectionModel().getSelectedItem();
 
 		suppressChangeEvents = true;
 
 		List<ClassInstance> classes = updateContents ? gui.getEnv().getDisplayClassesA(!gui.isShowNonInputs()) : null;
 
-
 		if (useClassTree) {
-			updateClassTree(classes, clsComparator, selClass);
+			updateClassTree(classes, selClass);
 		} else {
+			Comparator<ClassInstance> clsComparator = getClassComparator();
+
 			if (updateContents) {
 				classList.setItems(FXCollections.observableList(classes));
 			} else {
@@ -370,77 +365,153 @@ public class MatchPaneSrc extends SplitPane implements IFwdGuiComponent, ISelect
 		suppressChangeEvents = false;
 	}
 
-	private void updateClassTree(List<ClassInstance> newClasses, Comparator<ClassInstance> sortComparator, ClassInstance selectedClass) {
-		Map<String, List<TreeItem<Object>>> pkgNodeMap = null; // reuse pkg level nodes to keep their folding state
-
-		if (newClasses == null) {
-			newClasses = new ArrayList<>(2000);
-			pkgNodeMap = new HashMap<>(100);
+	/**
+	 * Sort and group the classes into packages in the background, then apply the differences to the tree.
+	 *
+	 * <p>Package items are reused by name to keep their folding state, their class items are only created once
+	 * expanded. Results of outdated updates get discarded.
+	 */
+	private void updateClassTree(List<ClassInstance> newClasses, ClassInstance selectedClass) {
+		if (newClasses != null) {
+			classTreeClasses = newClasses;
+		} else {
+			newClasses = classTreeClasses;
+		}
 
-			for (TreeItem<Object> pkgItem : classTree.getRoot().getChildren()) {
-				pkgNodeMap.computeIfAbsent((String) pkgItem.getValue(), ignore -> new ArrayList<>()).add(pkgItem);
+		List<ClassInstance> classes = new ArrayList<>(newClasses);
+		SortKey sortKey = gui.getSortKey();
+		NameType nameType = gui.getNameType().withUnmatchedTmp(true);
+		Map<ClassInstance, Float> similarities = null;
 
-				for (TreeItem<Object> item : pkgItem.getChildren()) {
-					newClasses.add((ClassInstance) item.getValue());
-				}
+		if (sortKey == SortKey.Similarity) { // the similarity cache is only accessible from the FX thread
+			similarities = new IdentityHashMap<>(classes.size());
 
-				pkgItem.getChildren().clear();
+			for (ClassInstance cls : classes) {
+				similarities.put(cls, similarityCache.get(cls));
 			}
 		}
 
-		newClasses.sort(sortComparator);
+		Map<ClassInstance, Float> similaritiesFinal = similarities;
+		TreeView<Object> tree = classTree;
+		int version = ++classTreeVersion;
+
+		Gui.runAsyncTask(() -> buildClassTree(classes, sortKey, nameType, similaritiesFinal))
+		.whenComplete((res, exc) -> {
+			if (exc != null) {
+				exc.printStackTrace();
+			} else if (version == classTreeVersion && tree == classTree) {
+				applyClassTree(res, selectedClass);
+			}
+		});
+	}
 
-		NameType nameType = gui.getNameType()
-				.withMapped(gui.getSortKey() == SortKey.MappedName)
-				.withUnmatchedTmp(true);
+	private static List<PackageNode> buildClassTree(List<ClassInstance> classes, SortKey sortKey, NameType nameType, Map<ClassInstance, Float> similarities) {
+		// precompute all sort keys so the order stays consistent while matches change concurrently
 
-		List<TreeItem<Object>> items = classTree.getRoot().getChildren();
-		items.clear();
-		String pkg = null;
-		List<TreeItem<Object>> pkgItems = null;
-		TreeItem<Object> toSelect = null;
+		NameType sortNameType = nameType.withMapped(sortKey == SortKey.MappedName);
+		List<ClassEntry> entries = new ArrayList<>(classes.size());
 
-		for (ClassInstance cls : newClasses) {
+		for (ClassInstance cls : classes) {
 			ClassInstance outerCls = cls;
 
 			while (outerCls.getOuterClass() != null) {
 				outerCls = outerCls.getOuterClass();
 			}
 
-			String name = outerCls.getDisplayName(nameType, true);
-			int pos = name.lastIndexOf('.');
+			String pkg = outerCls.getDisplayName(sortNameType, true);
+			int pos = pkg.lastIndexOf('.');
 
 			if (pos == -1) {
-				name = "<no package>";
+				pkg = "<no package>";
 			} else {
-				name = name.substring(0, pos);
+				pkg = pkg.substring(0, pos);
 			}
 
-			if (!name.equals(pkg)) {
-				TreeItem<Object> item;
-				List<TreeItem<Object>> pkgNode;
+			entries.add(new ClassEntry(cls, pkg,
+					cls.getDisplayName(sortNameType, true),
+					sortKey == SortKey.MatchStatus ? cls.getMatchStatus() : null,
+					similarities != null ? similarities.get(cls) : 0));
+		}
 
-				if (pkgNodeMap != null && (pkgNode = pkgNodeMap.remove(name)) != null) {
-					item = pkgNode.remove(0);
-					if (!pkgNode.isEmpty()) pkgNodeMap.put(name, pkgNode);
-				} else {
-					item = new TreeItem<>(name);
-				}
+		Comparator<ClassEntry> cmp;
 
-				items.add(item);
-				pkgItems = item.getChildren();
-				pkg = name;
+		switch (sortKey) {
+		case Name:
+		case MappedName:
+			cmp = Comparator.comparing(e -> e.sortName, clsNameComparator);
+			break;
+		case MatchStatus:
+			cmp = Comparator.<ClassEntry, MatchStatus>comparing(e -> e.status).thenComparing(e -> e.sortName, clsNameComparator);
+			break;
+		case Similarity:
+			cmp = Comparator.<ClassEntry>comparingDouble(e -> e.similarity).thenComparing(e -> e.sortName, clsNameComparator);
+			break;
+		default:
+			throw new IllegalStateException("unhandled sort key: "+sortKey);
+		}
+
+		entries.sort(cmp);
+
+		// group consecutive classes with the same package, sorting by status or similarity may split packages
+
+		List<PackageNode> ret = new ArrayList<>();
+		PackageNode node = null;
+
+		for (ClassEntry entry : entries) {
+			if (node == null || !entry.pkg.equals(node.name)) {
+				node = new PackageNode(entry.pkg);
+				ret.add(node);
 			}
 
-			TreeItem<Object> item = new TreeItem<>(cls);
-			pkgItems.add(item);
+			node.classes.add(entry.cls);
+		}
+
+		return ret;
+	}
+
+	private void applyClassTree(List<PackageNode> nodes, ClassInstance selectedClass) {
+		ClassInstance curSelection = getSelectedClass();
+		if (curSelection != null) selectedClass = curSelection; // selection changed while building
+
+		Map<String, List<PackageItem>> pkgItemMap = new HashMap<>();
+		ObservableList<TreeItem<Object>> oldItems = classTree.getRoot().getChildren();
+
+		for (TreeItem<Object> item : oldItems) {
+			pkgItemMap.computeIfAbsent((String) item.getValue(), ignore -> new ArrayList<>()).add((PackageItem) item);
+		}
+
+		List<TreeItem<Object>> newItems = new ArrayList<>(nodes.size());
+		PackageItem selectedPkgItem = null;
+
+		for (PackageNode node : nodes) {
+			List<PackageItem> pkgItems = pkgItemMap.get(node.name);
+			PackageItem item = pkgItems != null && !pkgItems.isEmpty() ? pkgItems.remove(0) : new PackageItem(node.name);
+
+			item.setClasses(node.classes);
+			newItems.add(item);
+
+			if (selectedPkgItem == null && selectedClass != null && node.classes.contains(selectedClass)) {
+				selectedPkgItem = item;
+			}
+		}
+
+		boolean oldSuppressChangeEvents = suppressChangeEvents;
+		suppressChangeEvents = true;
 
-			if (cls == selectedClass) toSelect = item;
+		if (!newItems.equals(oldItems)) {
+			oldItems.setAll(newItems);
 		}
 
-		if (toSelect != null) {
-			classTree.getSelectionModel().select(toSelect);
+		if (selectedPkgItem != null) {
+			for (TreeItem<Object> item : selectedPkgItem.getChildren()) {
+				if (item.getValue() == selectedClass) {
+					if (classTree.getSelectionModel().getSelectedItem() != item) classTree.getSelectionModel().select(item);
+					break;
+				}
+			}
 		}
+
+		suppressChangeEvents = oldSuppressChangeEvents;
 	}
 
 	private void refreshClassList() {
@@ -527,6 +598,8 @@ public class MatchPaneSrc extends SplitPane implements IFwdGuiComponent, ISelect
 
 	@Override
 	public void onMatchChange(Set<MatchType> types) {
+		similarityCache.invalidate();
+
 		if (gui.getSortKey() == SortKey.MatchStatus || gui.getSortKey() == SortKey.Similarity) {
 			updateLists(false, true);
 		} else if (types.contains(MatchType.Class)) {
@@ -546,6 +619,18 @@ public class MatchPaneSrc extends SplitPane implements IFwdGuiComponent, ISelect
 		IFwdGuiComponent.super.onMatchChange(types);
 	}
 
+	private void onSimilarityUpdate() {
+		if (gui.getSortKey() == SortKey.Similarity) {
+			updateLists(false, true);
+		}
+
+		if (gui.isUseDiffColors()) {
+			refreshClassList();
+			memberList.refresh();
+			varList.refresh();
+		}
+	}
+
 	@Override
 	public Collection<IGuiComponent> getComponents() {
 		return components;
@@ -573,51 +658,110 @@ public class MatchPaneSrc extends SplitPane implements IFwdGuiComponent, ISelect
 	private static final Comparator<? extends Matchable<?>> matchStatusComparator = (a, b) -> {
 		// sort order: unmatched partially-matched fully-matched-shallow fully-matched-recursive unmatchable
 
-		boolean aMatchable = a.hasPotentialMatch();
-		boolean bMatchable = b.hasPotentialMatch();
+		return a.getMatchStatus().compareTo(b.getMatchStatus());
+	};
 
-		if (aMatchable != bMatchable) {
-			return aMatchable ? -1 : 1;
-		} else if (!aMatchable) {
-			return 0;
-		} else if (a.hasMatch() != b.hasMatch()) {
-			return a.hasMatch() ? 1 : -1;
-		} else if (!a.hasMatch()) {
-			return 0;
+	private static final Comparator<String> clsNameComparator = Util::compareNatural;
+
+	private static final class ClassEntry {
+		ClassEntry(ClassInstance cls, String pkg, String sortName, MatchStatus status, float similarity) {
+			this.cls = cls;
+			this.pkg = pkg;
+			this.sortName = sortName;
+			this.status = status;
+			this.similarity = similarity;
 		}
 
-		boolean aFull = a.isFullyMatched(false);
-		boolean bFull = b.isFullyMatched(false);
+		final ClassInstance cls;
+		final String pkg;
+		final String sortName;
+		final MatchStatus status;
+		final float similarity;
+	}
 
-		if (aFull != bFull) {
-			return aFull ? 1 : -1;
-		} else if (!aFull) {
-			return 0;
+	private static final class PackageNode {
+		PackageNode(String name) {
+			this.name = name;
 		}
 
-		aFull = a.isFullyMatched(true);
-		bFull = b.isFullyMatched(true);
+		final String name;
+		final List<ClassInstance> classes = new ArrayList<>();
+	}
 
-		if (aFull != bFull) {
-			return aFull ? 1 : -1;
+	/**
+	 * Package tree item creating its class items on first access to the children, usually through expanding it.
+	 */
+	private static final class PackageItem extends TreeItem<Object> {
+		PackageItem(String name) {
+			super(name);
 		}
 
-		return 0;
-	};
+		void setClasses(List<ClassInstance> classes) {
+			if (classes.equals(this.classes)) return;
 
-	private static final Comparator<? extends Matchable<?>> similarityComparator = (a, b) -> {
-		return Float.compare(a.getSimilarity(), b.getSimilarity());
-	};
+			this.classes = classes;
 
-	private static final Comparator<String> clsNameComparator = Util::compareNatural;
+			if (populated) {
+				if (isExpanded()) {
+					populate();
+				} else { // defer until expanded again
+					populated = false;
+					super.getChildren().clear();
+				}
+			}
+		}
+
+		@Override
+		public boolean isLeaf() {
+			return classes.isEmpty();
+		}
+
+		@Override
+		public ObservableList<TreeItem<Object>> getChildren() {
+			if (!populated) {
+				populated = true;
+				populate();
+			}
+
+			return super.getChildren();
+		}
+
+		private void populate() {
+			ObservableList<TreeItem<Object>> children = super.getChildren();
+			Map<Object, TreeItem<Object>> existing = new IdentityHashMap<>(children.size());
+
+			for (TreeItem<Object> item : children) {
+				existing.put(item.getValue(), item);
+			}
+
+			List<TreeItem<Object>> items = new ArrayList<>(classes.size());
+
+			for (ClassInstance cls : classes) {
+				TreeItem<Object> item = existing.get(cls);
+				items.add(item != null ? item : new TreeItem<>(cls));
+			}
+
+			if (!items.equals(children)) children.setAll(items);
+		}
+
+		List<ClassInstance> classes = Collections.emptyList();
+		private boolean populated;
+	}
 
 	private final Gui gui;
 	private final Collection<IGuiComponent> components = new ArrayList<>();
 	private boolean useClassTree;
 	private ListView<ClassInstance> classList;
 	private TreeView<Object> classTree;
+	private List<ClassInstance> classTreeClasses = Collections.emptyList();
+	private int classTreeVersion;
 	private final ListView<MemberInstance<?>> memberList = new ListView<>();
 	private final ListView<MethodVarInstance> varList = new ListView<>();
 
+	private final SimilarityCache similarityCache = new SimilarityCache(this::onSimilarityUpdate);
+	private final Comparator<? extends Matchable<?>> similarityComparator = (a, b) -> {
+		return Float.compare(similarityCache.get(a), similarityCache.get(b));
+	};
+
 	private boolean suppressChangeEvents;
 }
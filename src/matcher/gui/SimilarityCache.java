@@ -0,0 +1,118 @@
+package matcher.gui;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import matcher.Matcher;
+import matcher.Util;
+import matcher.type.Matchable;
+
+/**
+ * Similarity scores of displayed elements for sorting and coloring.
+ *
+ * <p>Scores are computed on first access. Elements whose own match changed get recomputed on access. Elements
+ * reported through {@link #onMatchChange} and their owners, whose scores depend on the matches of their members and
+ * vars, are recomputed in the background after {@link #invalidate()} while the previous values keep being served.
+ * The cache is only accessed from the FX thread except for onMatchChange, the update listener is invoked on the FX
+ * thread once the background update is done.
+ */
+final class SimilarityCache {
+	SimilarityCache(Runnable updateListener) {
+		this.updateListener = updateListener;
+	}
+
+	float get(Matchable<?> m) {
+		Entry entry = entries.get(m);
+
+		if (entry == null || entry.match != m.getMatch()) {
+			entry = new Entry(m.getMatch(), m.getSimilarity());
+			entries.put(m, entry);
+		}
+
+		return entry.similarity;
+	}
+
+	/**
+	 * Record an element whose match changed, may be called from any thread.
+	 */
+	void onMatchChange(Matchable<?> m) {
+		changed.add(m);
+	}
+
+	/**
+	 * Recompute the cached scores affected by the recorded match changes asynchronously, to be called after match
+	 * changes.
+	 */
+	void invalidate() {
+		for (Iterator<Matchable<?>> it = changed.iterator(); it.hasNext(); ) {
+			Matchable<?> m = it.next();
+			it.remove();
+
+			for (; m != null; m = m.getOwner()) { // var -> method -> class
+				if (entries.containsKey(m)) stale.add(m);
+			}
+		}
+
+		if (!stale.isEmpty()) scheduleUpdate();
+	}
+
+	void clear() {
+		changed.clear();
+		stale.clear();
+		entries.clear();
+		version++;
+	}
+
+	private void scheduleUpdate() {
+		if (updating) return;
+
+		updating = true;
+		int targetVersion = version;
+		List<Matchable<?>> pending = new ArrayList<>(stale);
+		stale.clear();
+
+		Gui.runAsyncTask(() -> {
+			Map<Matchable<?>, Entry> ret = new ConcurrentHashMap<>(pending.size());
+
+			Matcher.runInParallel(pending, m -> {
+				Matchable<?> match = m.getMatch();
+				ret.put(m, new Entry(match, match != null ? m.getSimilarity() : 0));
+			}, progress -> { });
+
+			return ret;
+		}).whenComplete((res, exc) -> {
+			updating = false;
+
+			if (exc != null) {
+				exc.printStackTrace();
+			} else if (version == targetVersion) { // not cleared while updating
+				entries.putAll(res); // only modified on the FX thread to keep the values stable while sorting
+				updateListener.run();
+			}
+
+			if (!stale.isEmpty()) scheduleUpdate(); // invalidated again while updating
+		});
+	}
+
+	private static final class Entry {
+		Entry(Matchable<?> match, float similarity) {
+			this.match = match;
+			this.similarity = similarity;
+		}
+
+		final Matchable<?> match;
+		final float similarity;
+	}
+
+	private final Runnable updateListener;
+	private final Map<Matchable<?>, Entry> entries = new IdentityHashMap<>();
+	private final Set<Matchable<?>> changed = ConcurrentHashMap.newKeySet();
+	private final Set<Matchable<?>> stale = Util.newIdentityHashSet();
+	private int version; // incremented by clear to discard running updates
+	private boolean updating;
+}
@@ -37,6 +37,7 @@ import matcher.gui.menu.LoadMappingsPane.MappingsLoadSettings;
 import matcher.gui.menu.LoadProjectPane.ProjectLoadSettings;
 import matcher.gui.menu.SaveMappingsPane.MappingsSaveSettings;
 import matcher.mapping.Mappings;
+import matcher.mapping.MappingsExportTarget;
 import matcher.serdes.MatchesIo;
 import matcher.type.ClassEnvironment;
 import matcher.type.MatchType;
@@ -326,7 +327,7 @@ public class FileMenu extends Menu {
 		dialog.setTitle("Mappings export settings");
 		dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
 
-		SaveMappingsPane content = new SaveMappingsPane(format.hasNamespaces);
+		SaveMappingsPane content = new SaveMappingsPane(format);
 		dialog.getDialogPane().setContent(content);
 		dialog.setResultConverter(button -> button == ButtonType.OK ? content.getSettings() : null);
 		final Path savePath = path;
@@ -334,14 +335,35 @@ public class FileMenu extends Menu {
 
 		dialog.showAndWait().ifPresent(settings -> {
 			ClassEnvironment env = gui.getMatcher().getEnv();
+			List<MappingsExportTarget> targets = new ArrayList<>();
+			targets.add(new MappingsExportTarget(savePath, saveFormat, settings.nsTypes, settings.nsNames));
+
+			if (!settings.extraFormats.isEmpty()) {
+				String baseName = savePath.getFileName().toString();
+				if (saveFormat.hasSingleFile() && baseName.endsWith("."+saveFormat.fileExt)) baseName = baseName.substring(0, baseName.length() - saveFormat.fileExt.length() - 1);
+
+				for (MappingFormat extraFormat : settings.extraFormats) {
+					targets.add(new MappingsExportTarget(savePath.resolveSibling(baseName+"."+extraFormat.fileExt), extraFormat,
+							settings.nsTypes, extraFormat.hasNamespaces ? settings.nsNames : null));
+				}
+
+				for (MappingsExportTarget target : targets.subList(1, targets.size())) {
+					if (Files.exists(target.file)
+							&& !gui.requestConfirmation("Save Confirmation", "Replace existing data", "The file "+target.file.getFileName()+" already exists.\nDo you want to replace it?")) {
+						return;
+					}
+				}
+			}
 
 			try {
-				if (Files.exists(savePath)) {
-					Files.deleteIfExists(savePath);
+				for (MappingsExportTarget target : targets) {
+					if (Files.exists(target.file)) {
+						Files.deleteIfExists(target.file);
+					}
 				}
 
-				if (!Mappings.save(savePath, saveFormat, (settings.a ? env.getEnvA() : env.getEnvB()),
-						settings.nsTypes, settings.nsNames, settings.verbosity, settings.forAnyInput, settings.fieldsFirst)) {
+				if (!Mappings.save(targets, (settings.a ? env.getEnvA() : env.getEnvB()),
+						settings.verbosity, settings.forAnyInput, settings.fieldsFirst, true)) {
 					gui.showAlert(AlertType.WARNING, "Mapping save warning", "No mappings to save", "There are currently no names mapped to matched classes, so saving was aborted.");
 				}
 			} catch (IOException e) {
@@ -394,17 +416,20 @@ public class FileMenu extends Menu {
 	}
 
 	private static List<ExtensionFilter> getMatchesLoadExtensionFilters() {
-		return Arrays.asList(new FileChooser.ExtensionFilter("Matches", "*.match"));
+		return Arrays.asList(new FileChooser.ExtensionFilter("Matches", "*"+MatchesIo.textExtension, "*"+MatchesIo.binaryExtension));
 	}
 
 	private void saveMatches() {
-		SelectedFile res = Gui.requestFile("Save matches file", gui.getScene().getWindow(), Arrays.asList(new FileChooser.ExtensionFilter("Matches", "*.match")), false);
+		ExtensionFilter binaryFilter = new FileChooser.ExtensionFilter("Binary matches", "*"+MatchesIo.binaryExtension);
+		SelectedFile res = Gui.requestFile("Save matches file", gui.getScene().getWindow(), Arrays.asList(new FileChooser.ExtensionFilter("Matches", "*"+MatchesIo.textExtension), binaryFilter), false);
 		if (res == null) return;
 
 		Path path = res.path;
+		String fileName = path.getFileName().toString().toLowerCase(Locale.ENGLISH);
 
-		if (!path.getFileName().toString().toLowerCase(Locale.ENGLISH).endsWith(".match")) {
-			path = path.resolveSibling(path.getFileName().toString()+".match");
+		if (!fileName.endsWith(MatchesIo.textExtension) && !fileName.endsWith(MatchesIo.binaryExtension)) {
+			String ext = res.filter == binaryFilter ? MatchesIo.binaryExtension : MatchesIo.textExtension;
+			path = path.resolveSibling(path.getFileName().toString()+ext);
 		}
 
 		try {
@@ -3,10 +3,12 @@ package matcher.gui.menu;
 import java.util.EnumSet;
 
 import javafx.scene.control.Alert.AlertType;
+import javafx.scene.control.CheckMenuItem;
 import javafx.scene.control.Menu;
 import javafx.scene.control.MenuItem;
 import javafx.scene.control.SeparatorMenuItem;
 
+import matcher.CancellationToken;
 import matcher.Matcher.MatchingStatus;
 import matcher.gui.Gui;
 import matcher.type.MatchType;
@@ -49,6 +51,13 @@ public class MatchingMenu extends Menu {
 
 		getItems().add(new SeparatorMenuItem());
 
+		CheckMenuItem checkMenuItem = new CheckMenuItem("Global member assignment");
+		checkMenuItem.setSelected(gui.getMatcher().isGlobalMemberAssignment());
+		getItems().add(checkMenuItem);
+		checkMenuItem.setOnAction(event -> gui.getMatcher().setGlobalMemberAssignment(checkMenuItem.isSelected()));
+
+		getItems().add(new SeparatorMenuItem());
+
 		menuItem = new MenuItem("Status (A)");
 		getItems().add(menuItem);
 		menuItem.setOnAction(event -> showMatchingStatus("A", gui.getMatcher().getStatusA(true)));
@@ -59,11 +68,14 @@ public class MatchingMenu extends Menu {
 	}
 
 	public void autoMatchAll() {
+		CancellationToken cancelToken = new CancellationToken();
+
 		gui.runProgressTask(
 				"Auto matching...",
-				gui.getMatcher()::autoMatchAll,
+				progress -> gui.getMatcher().autoMatchAll(progress, cancelToken),
 				() -> gui.onMatchChange(EnumSet.allOf(MatchType.class)),
-				Throwable::printStackTrace);
+				Throwable::printStackTrace,
+				cancelToken);
 	}
 
 	public void autoMatchClasses() {
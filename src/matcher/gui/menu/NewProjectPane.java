@@ -34,6 +34,7 @@ import javafx.stage.FileChooser;
 import javafx.stage.FileChooser.ExtensionFilter;
 import javafx.stage.Window;
 
+import matcher.config.Config;
 import matcher.config.ProjectConfig;
 import matcher.gui.Gui;
 import matcher.gui.Gui.SelectedFile;
@@ -316,7 +317,8 @@ public class NewProjectPane extends GridPane {
 				nonObfuscatedClassPatternA.getText(),
 				nonObfuscatedClassPatternB.getText(),
 				nonObfuscatedMemberPatternA.getText(),
-				nonObfuscatedMemberPatternB.getText());
+				nonObfuscatedMemberPatternB.getText(),
+				Config.getProjectConfig().getAutoMatchStages());
 	}
 
 	private final Window window;
@@ -1,6 +1,9 @@
 package matcher.gui.menu;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 import javafx.collections.FXCollections;
 import javafx.scene.control.CheckBox;
@@ -12,16 +15,19 @@ import javafx.scene.control.ToggleGroup;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
 
+import net.fabricmc.mappingio.format.MappingFormat;
+
 import matcher.NameType;
 import matcher.gui.GuiConstants;
 import matcher.mapping.MappingsExportVerbosity;
 
 class SaveMappingsPane extends GridPane {
-	SaveMappingsPane(boolean offerNamespaces) {
-		init(offerNamespaces);
+	SaveMappingsPane(MappingFormat format) {
+		init(format);
 	}
 
-	private void init(boolean offerNamespaces) {
+	private void init(MappingFormat format) {
+		boolean offerNamespaces = format.hasNamespaces;
 		setHgap(GuiConstants.PADDING);
 		setVgap(GuiConstants.PADDING);
 
@@ -74,23 +80,49 @@ class SaveMappingsPane extends GridPane {
 
 		cbFieldsFirst = new CheckBox("emit fields first");
 		add(cbFieldsFirst, 0, 5, 1 + col23Span, 1);
+
+		add(new Label("Also export as:"), 0, 6);
+		HBox extraFormatBox = new HBox(GuiConstants.PADDING);
+
+		for (MappingFormat extraFormat : extraFormats) {
+			if (extraFormat == format) continue;
+
+			CheckBox cb = new CheckBox(extraFormat.name);
+			cbExtraFormats.put(extraFormat, cb);
+			extraFormatBox.getChildren().add(cb);
+		}
+
+		add(extraFormatBox, 1, 6, col23Span, 1);
 	}
 
 	public MappingsSaveSettings getSettings() {
 		return new MappingsSaveSettings(rbA.isSelected(),
 				List.of(cbSrc.getValue(), cbDst.getValue()), (tfSrc != null ? List.of(tfSrc.getText(), tfDst.getText()) : null),
-				cbVerbosity.getValue(), cbForAnyInput.isSelected(), cbFieldsFirst.isSelected());
+				cbVerbosity.getValue(), cbForAnyInput.isSelected(), cbFieldsFirst.isSelected(),
+				getExtraFormats());
+	}
+
+	private List<MappingFormat> getExtraFormats() {
+		List<MappingFormat> ret = new ArrayList<>();
+
+		for (Map.Entry<MappingFormat, CheckBox> entry : cbExtraFormats.entrySet()) {
+			if (entry.getValue().isSelected()) ret.add(entry.getKey());
+		}
+
+		return ret;
 	}
 
 	public static class MappingsSaveSettings {
 		public MappingsSaveSettings(boolean a, List<NameType> nsTypes, List<String> nsNames,
-				MappingsExportVerbosity verbosity, boolean forAnyInput, boolean fieldsFirst) {
+				MappingsExportVerbosity verbosity, boolean forAnyInput, boolean fieldsFirst,
+				List<MappingFormat> extraFormats) {
 			this.a = a;
 			this.nsTypes = nsTypes;
 			this.nsNames = nsNames;
 			this.verbosity = verbosity;
 			this.forAnyInput = forAnyInput;
 			this.fieldsFirst = fieldsFirst;
+			this.extraFormats = extraFormats;
 		}
 
 		public final boolean a;
@@ -99,8 +131,14 @@ class SaveMappingsPane extends GridPane {
 		public final MappingsExportVerbosity verbosity;
 		public final boolean forAnyInput;
 		public final boolean fieldsFirst;
+		/**
+		 * Additional single file formats to write next to the selected file in the same export.
+		 */
+		public final List<MappingFormat> extraFormats;
 	}
 
+	private static final MappingFormat[] extraFormats = { MappingFormat.TINY_2, MappingFormat.TINY, MappingFormat.SRG };
+
 	private RadioButton rbA;
 	private RadioButton rbB;
 	private ComboBox<NameType> cbSrc;
@@ -110,4 +148,5 @@ class SaveMappingsPane extends GridPane {
 	private ComboBox<MappingsExportVerbosity> cbVerbosity;
 	private CheckBox cbForAnyInput;
 	private CheckBox cbFieldsFirst;
+	private final Map<MappingFormat, CheckBox> cbExtraFormats = new EnumMap<>(MappingFormat.class);
 }
@@ -17,7 +17,7 @@ import javafx.scene.control.Dialog;
 import javafx.scene.control.Menu;
 import javafx.scene.control.MenuItem;
 import javafx.scene.control.SeparatorMenuItem;
-import matcher.Matcher;
+import matcher.MatchBatch;
 import matcher.config.Config;
 import matcher.config.UidConfig;
 import matcher.gui.Gui;
@@ -106,7 +106,7 @@ public class UidMenu extends Menu {
 
 			try (DataInputStream is = new DataInputStream(conn.getInputStream())) {
 				ClassEnvironment env = gui.getEnv();
-				Matcher matcher = gui.getMatcher();
+				MatchBatch batch = new MatchBatch(gui.getMatcher());
 				int type;
 
 				while ((type = is.read()) != -1) {
@@ -120,7 +120,7 @@ public class UidMenu extends Menu {
 
 					switch (type) {
 					case TYPE_CLASS:
-						matcher.match(clsA, clsB);
+						batch.match(clsA, clsB);
 						break;
 					case TYPE_METHOD:
 					case TYPE_ARG:
@@ -130,7 +130,7 @@ public class UidMenu extends Menu {
 						if (methodA == null || methodB == null) break;
 
 						if (type == TYPE_METHOD) {
-							matcher.match(methodA, methodB);
+							batch.match(methodA, methodB);
 						} else {
 							idA = idA.substring(idA.lastIndexOf(')') + 1);
 							idB = idB.substring(idB.lastIndexOf(')') + 1);
@@ -139,7 +139,7 @@ public class UidMenu extends Menu {
 							MethodVarInstance varB = methodB.getVar(idB, type == TYPE_ARG);
 
 							if (varA != null && varB != null) {
-								matcher.match(varA, varB);
+								batch.match(varA, varB);
 							}
 						}
 
@@ -150,11 +150,13 @@ public class UidMenu extends Menu {
 						FieldInstance fieldB = getField(clsB, idB);
 						if (fieldA == null || fieldB == null) break;
 
-						matcher.match(fieldA, fieldB);
+						batch.match(fieldA, fieldB);
 						break;
 					}
 					}
 				}
+
+				batch.apply();
 			}
 
 			progressConsumer.accept(1);
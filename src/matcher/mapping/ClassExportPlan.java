@@ -0,0 +1,180 @@
+package matcher.mapping;
+
+import java.util.List;
+
+import net.fabricmc.mappingio.FlatMappingVisitor;
+import net.fabricmc.mappingio.format.MappingFormat;
+
+/**
+ * Export data of a class for one set of namespaces, shared by all targets using these namespaces.
+ *
+ * <p>The names, the member order and the name export decisions are determined once by {@link Mappings}, writing only
+ * applies the checks depending on the target format's support for comments, args and locals.
+ */
+final class ClassExportPlan {
+	ClassExportPlan(String srcName, String[] dstNames, boolean hasNames, String comment, List<MemberPlan> methods, List<MemberPlan> fields) {
+		this.srcName = srcName;
+		this.dstNames = dstNames;
+		this.hasNames = hasNames;
+		this.comment = comment;
+		this.methods = methods;
+		this.fields = fields;
+	}
+
+	/**
+	 * Write the class with its members into writer.
+	 *
+	 * @return whether anything was written
+	 */
+	boolean write(FlatMappingVisitor writer, MappingFormat format, boolean fieldsFirst) {
+		if (!hasNames
+				&& (!format.supportsComments || comment == null)
+				&& !shouldExportAny(methods, format)
+				&& !shouldExportAny(fields, format)) {
+			return false; // no data for the class in this format, skip
+		}
+
+		if (!writer.visitClass(srcName, dstNames)) {
+			return false;
+		}
+
+		if (comment != null) writer.visitClassComment(srcName, dstNames, comment);
+
+		if (fieldsFirst) writeFields(writer, format);
+		writeMethods(writer, format);
+		if (!fieldsFirst) writeFields(writer, format);
+
+		return true;
+	}
+
+	private void writeMethods(FlatMappingVisitor writer, MappingFormat format) {
+		for (MemberPlan m : methods) {
+			if (!m.shouldExport(format)) continue;
+			if (!writer.visitMethod(srcName, m.srcName, m.desc, dstNames, m.dstNames, m.dstDescs)) continue;
+
+			if (format.supportsComments && m.comment != null) {
+				writer.visitMethodComment(srcName, m.srcName, m.desc, dstNames, m.dstNames, m.dstDescs, m.comment);
+			}
+
+			if (format.supportsArgs) {
+				for (VarPlan arg : m.args) {
+					if (arg.hasNames) {
+						writer.visitMethodArg(srcName, m.srcName, m.desc, arg.index, arg.lvIndex, arg.srcName,
+								dstNames, m.dstNames, m.dstDescs, arg.dstNames);
+					}
+
+					if (format.supportsComments && arg.comment != null) {
+						writer.visitMethodArgComment(srcName, m.srcName, m.desc, arg.index, arg.lvIndex, arg.srcName,
+								dstNames, m.dstNames, m.dstDescs, arg.dstNames,
+								arg.comment);
+					}
+				}
+			}
+
+			if (format.supportsLocals) {
+				for (VarPlan var : m.vars) {
+					if (var.hasNames) {
+						writer.visitMethodVar(srcName, m.srcName, m.desc,
+								var.asmIndex, var.lvIndex, var.startOpIdx, var.srcName,
+								dstNames, m.dstNames, m.dstDescs, var.dstNames);
+					}
+
+					if (format.supportsComments && var.comment != null) {
+						writer.visitMethodVarComment(srcName, m.srcName, m.desc,
+								var.asmIndex, var.lvIndex, var.startOpIdx, var.srcName,
+								dstNames, m.dstNames, m.dstDescs, var.dstNames,
+								var.comment);
+					}
+				}
+			}
+		}
+	}
+
+	private void writeFields(FlatMappingVisitor writer, MappingFormat format) {
+		for (MemberPlan f : fields) {
+			if (!f.shouldExport(format)) continue;
+			if (!writer.visitField(srcName, f.srcName, f.desc, dstNames, f.dstNames, f.dstDescs)) continue;
+
+			if (format.supportsComments && f.comment != null) {
+				writer.visitFieldComment(srcName, f.srcName, f.desc, dstNames, f.dstNames, f.dstDescs, f.comment);
+			}
+		}
+	}
+
+	private static boolean shouldExportAny(List<MemberPlan> members, MappingFormat format) {
+		for (MemberPlan m : members) {
+			if (m.shouldExport(format)) return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Method or field, dstNames is null for methods whose names are not exported with the chosen verbosity.
+	 */
+	static final class MemberPlan {
+		MemberPlan(String srcName, String desc, String[] dstNames, boolean hasNames, String[] dstDescs, String comment, List<VarPlan> args, List<VarPlan> vars) {
+			this.srcName = srcName;
+			this.desc = desc;
+			this.dstNames = dstNames;
+			this.hasNames = hasNames;
+			this.dstDescs = dstDescs;
+			this.comment = comment;
+			this.args = args;
+			this.vars = vars;
+		}
+
+		boolean shouldExport(MappingFormat format) {
+			return hasNames
+					|| format.supportsComments && comment != null
+					|| format.supportsArgs && shouldExportAny(args, format)
+					|| format.supportsLocals && shouldExportAny(vars, format);
+		}
+
+		private static boolean shouldExportAny(List<VarPlan> vars, MappingFormat format) {
+			for (VarPlan v : vars) {
+				if (v.hasNames || format.supportsComments && v.comment != null) return true;
+			}
+
+			return false;
+		}
+
+		final String srcName;
+		final String desc;
+		final String[] dstNames;
+		final boolean hasNames;
+		final String[] dstDescs;
+		final String comment;
+		final List<VarPlan> args;
+		final List<VarPlan> vars;
+	}
+
+	static final class VarPlan {
+		VarPlan(int index, int lvIndex, int asmIndex, int startOpIdx, String srcName, String[] dstNames, boolean hasNames, String comment) {
+			this.index = index;
+			this.lvIndex = lvIndex;
+			this.asmIndex = asmIndex;
+			this.startOpIdx = startOpIdx;
+			this.srcName = srcName;
+			this.dstNames = dstNames;
+			this.hasNames = hasNames;
+			this.comment = comment;
+		}
+
+		final int index;
+		final int lvIndex;
+		final int asmIndex;
+		final int startOpIdx;
+		final String srcName;
+		final String[] dstNames;
+		final boolean hasNames;
+		final String comment;
+	}
+
+	final String srcName;
+	final String[] dstNames;
+	final boolean hasNames;
+	final String comment;
+	final List<MemberPlan> methods;
+	final List<MemberPlan> fields;
+}
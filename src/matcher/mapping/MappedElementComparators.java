@@ -1,7 +1,11 @@
 package matcher.mapping;
 
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
 import java.util.Objects;
+import java.util.function.Function;
 
 import matcher.NameType;
 import matcher.type.ClassInstance;
@@ -39,35 +43,46 @@ public final class MappedElementComparators {
 		return new Comparator<ClassInstance>() {
 			@Override
 			public int compare(ClassInstance a, ClassInstance b) {
-				String nameA = a.getName(ns);
-				String nameB = b.getName(ns);
+				return nameShortFirstNestawareComparator.compare(a.getName(ns), b.getName(ns));
+			}
+		};
+	}
 
-				if (nameA == null || nameB == null) {
-					return compareNullLast(nameA, nameB);
-				}
+	/**
+	 * Class name comparator equivalent to {@link #byNameShortFirstNestaware}, for use with precomputed names.
+	 */
+	public static Comparator<String> nameShortFirstNestaware() {
+		return nameShortFirstNestawareComparator;
+	}
 
-				int pos = 0;
+	private static final Comparator<String> nameShortFirstNestawareComparator = new Comparator<String>() {
+		@Override
+		public int compare(String nameA, String nameB) {
+			if (nameA == null || nameB == null) {
+				return compareNullLast(nameA, nameB);
+			}
 
-				do {
-					int endA = nameA.indexOf('$', pos);
-					int endB = nameB.indexOf('$', pos);
+			int pos = 0;
 
-					int ret = compareNameShortFirst(nameA, pos, endA >= 0 ? endA : nameA.length(),
-							nameB, pos, endB >= 0 ? endB : nameB.length());
+			do {
+				int endA = nameA.indexOf('$', pos);
+				int endB = nameB.indexOf('$', pos);
 
-					if (ret != 0) {
-						return ret;
-					} else if ((endA < 0) != (endB < 0)) {
-						return endA < 0 ? -1 : 1;
-					}
+				int ret = compareNameShortFirst(nameA, pos, endA >= 0 ? endA : nameA.length(),
+						nameB, pos, endB >= 0 ? endB : nameB.length());
 
-					pos = endA + 1;
-				} while (pos > 0);
+				if (ret != 0) {
+					return ret;
+				} else if ((endA < 0) != (endB < 0)) {
+					return endA < 0 ? -1 : 1;
+				}
 
-				return 0;
-			}
-		};
-	}
+				pos = endA + 1;
+			} while (pos > 0);
+
+			return 0;
+		}
+	};
 
 	private static int compareNameShortFirst(String nameA, int startA, int endA, String nameB, int startB, int endB) {
 		int lenA = endA - startA;
@@ -90,14 +105,51 @@ public final class MappedElementComparators {
 		return new Comparator<T>() {
 			@Override
 			public int compare(T a, T b) {
-				String valA = Objects.toString(a.getName(ns)).concat(Objects.toString(a.getDesc(ns)));
-				String valB = Objects.toString(b.getName(ns)).concat(Objects.toString(b.getDesc(ns)));
-
-				return valA.compareTo(valB);
+				return getNameDescKey(a, ns).compareTo(getNameDescKey(b, ns));
 			}
 		};
 	}
 
+	/**
+	 * Sort key for {@link #byNameDescConcat}, to be compared in natural order.
+	 */
+	public static String getNameDescKey(MemberInstance<?> member, NameType ns) {
+		return Objects.toString(member.getName(ns)).concat(Objects.toString(member.getDesc(ns)));
+	}
+
+	/**
+	 * Sort list by keys extracted only once per element, equal elements keep their order.
+	 */
+	public static <T, K> void sortByKey(List<T> list, Function<? super T, ? extends K> keyExtractor, Comparator<? super K> keyCmp) {
+		int size = list.size();
+		if (size < 2) return;
+
+		List<Keyed<T, K>> entries = new ArrayList<>(size);
+
+		for (T element : list) {
+			entries.add(new Keyed<>(element, keyExtractor.apply(element)));
+		}
+
+		entries.sort((a, b) -> keyCmp.compare(a.key, b.key));
+
+		ListIterator<T> it = list.listIterator();
+
+		for (Keyed<T, K> entry : entries) {
+			it.next();
+			it.set(entry.element);
+		}
+	}
+
+	private static final class Keyed<T, K> {
+		Keyed(T element, K key) {
+			this.element = element;
+			this.key = key;
+		}
+
+		final T element;
+		final K key;
+	}
+
 	public static Comparator<MethodVarInstance> byLvIndex() {
 		return lvIndexComparator;
 	}
@@ -0,0 +1,656 @@
+package matcher.mapping;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.fabricmc.mappingio.MappedElementKind;
+import net.fabricmc.mappingio.MappingReader;
+import net.fabricmc.mappingio.MappingVisitor;
+import net.fabricmc.mappingio.adapter.MappingSourceNsSwitch;
+import net.fabricmc.mappingio.format.MappingFormat;
+
+import matcher.Matcher;
+import matcher.NameType;
+import matcher.type.ClassInstance;
+import matcher.type.FieldInstance;
+import matcher.type.LocalClassEnv;
+import matcher.type.Matchable;
+import matcher.type.MatchableKind;
+import matcher.type.MemberInstance;
+import matcher.type.MethodInstance;
+import matcher.type.MethodVarInstance;
+
+/**
+ * Mapping import for {@link Mappings#load}.
+ *
+ * <p>The import runs in three stages: the mapping file is streamed into plain entries, the entries are resolved
+ * against name indexes per class in parallel and the names and comments are finally applied serially in file order.
+ * Applying stays serial since member names are propagated across the whole hierarchy, which spans classes.
+ */
+final class MappingImporter {
+	MappingImporter(String nsTarget,
+			MappingField fieldSource, MappingField fieldTarget,
+			LocalClassEnv env, boolean replace) {
+		this.nsTarget = nsTarget;
+		this.fieldSource = fieldSource;
+		this.fieldTarget = fieldTarget;
+		this.env = env;
+		this.replace = replace;
+	}
+
+	void read(Path path, MappingFormat format, String nsSource) throws IOException {
+		MappingReader.read(path, format, new MappingSourceNsSwitch(new Recorder(), nsSource));
+	}
+
+	void resolve() {
+		if (fieldSource != MappingField.PLAIN) {
+			classIndex = new HashMap<>(env.getClasses().size());
+
+			for (ClassInstance cls : env.getClasses()) {
+				String name = cls.getName(fieldSource.type);
+				if (name != null) classIndex.putIfAbsent(name, cls);
+			}
+		}
+
+		Matcher.runInParallel(classes, this::resolve, progress -> { });
+	}
+
+	void apply() {
+		Set<String> warnedClasses = new HashSet<>();
+
+		for (ClassEntry entry : classes) {
+			if (entry.target == null) {
+				if (warnedClasses.add(entry.srcName)) System.out.println("can't find mapped class "+entry.srcName);
+				continue;
+			}
+
+			if (entry.warnings != null) {
+				for (String warning : entry.warnings) {
+					System.out.println(warning);
+				}
+			}
+
+			apply(entry, MappedElementKind.CLASS);
+
+			for (MemberEntry member : entry.members) {
+				if (member.target == null) continue;
+
+				apply(member, member.kind);
+
+				for (VarEntry var : member.vars) {
+					if (var.target != null) apply(var, var.isArg ? MappedElementKind.METHOD_ARG : MappedElementKind.METHOD_VAR);
+				}
+			}
+		}
+	}
+
+	int getDstNameCount(MatchableKind kind) {
+		return dstNameCounts[kind.ordinal()];
+	}
+
+	int getCommentCount(MatchableKind kind) {
+		return commentCounts[kind.ordinal()];
+	}
+
+	private void resolve(ClassEntry entry) {
+		ClassInstance cls = findClass(entry.srcName);
+		if (cls == null) return;
+
+		entry.target = cls;
+		MemberIndex memberIndex = null;
+
+		for (MemberEntry member : entry.members) {
+			if (fieldSource != MappingField.PLAIN && memberIndex == null) memberIndex = new MemberIndex(cls, fieldSource.type);
+
+			if (member.kind == MappedElementKind.METHOD) {
+				MethodInstance method = memberIndex != null ? memberIndex.getMethod(cls, member.srcName, member.srcDesc, fieldSource.type) : cls.getMethod(member.srcName, member.srcDesc);
+
+				if (method == null || !method.isReal()) {
+					entry.warn(String.format("can't find mapped method %s/%s%s",
+							cls.getName(fieldSource.type), member.srcName, member.srcDesc));
+					continue;
+				}
+
+				member.target = method;
+				VarIndex argIndex = null;
+				VarIndex varIndex = null;
+
+				for (VarEntry var : member.vars) {
+					VarIndex index;
+
+					if (var.isArg) {
+						if (argIndex == null) argIndex = new VarIndex(method.getArgs());
+						index = argIndex;
+					} else {
+						if (varIndex == null) varIndex = new VarIndex(method.getVars());
+						index = varIndex;
+					}
+
+					var.target = getMethodVar(entry, method, index, var.argPosition, var.lvIndex, var.startOpIdx, var.asmIndex, var.isArg);
+				}
+			} else {
+				FieldInstance field = memberIndex != null ? memberIndex.getField(cls, member.srcName, member.srcDesc, fieldSource.type) : cls.getField(member.srcName, member.srcDesc);
+
+				if (field == null || !field.isReal()) {
+					entry.warn("can't find mapped field "+cls.getName(fieldSource.type)+"/"+member.srcName);
+					continue;
+				}
+
+				member.target = field;
+			}
+		}
+	}
+
+	private ClassInstance findClass(String name) {
+		switch (fieldSource) {
+		case PLAIN:
+			return env.getLocalClsByName(name);
+		case MAPPED:
+		case AUX:
+		case AUX2:
+		case UID:
+			ClassInstance ret = classIndex.get(name);
+			if (ret == null) ret = env.getClsByName(name);
+
+			return ret != null && !ret.isShared() ? ret : null;
+		default:
+			throw new IllegalArgumentException();
+		}
+	}
+
+	private static MethodVarInstance getMethodVar(ClassEntry entry, MethodInstance method, VarIndex index,
+			int varIndex, int lvIndex, int startOpIdx, int asmIndex, boolean isArg) {
+		if (isArg && varIndex < -1 || varIndex >= method.getArgs().length) {
+			entry.warn("invalid var index "+varIndex+" for method "+method);
+		} else if (lvIndex < -1 || lvIndex >= (isArg ? method.getArgs() : method.getVars()).length * 2 + 1) {
+			entry.warn("invalid lv index "+lvIndex+" for method "+method);
+		} else if (asmIndex < -1) {
+			entry.warn("invalid lv asm index "+asmIndex+" for method "+method);
+		} else {
+			if (!isArg || varIndex == -1) {
+				if (asmIndex >= 0) {
+					varIndex = index.findByAsm(asmIndex);
+
+					if (varIndex == -1) {
+						entry.warn("invalid lv asm index "+asmIndex+" for method "+method);
+						return null;
+					}
+				} else if (lvIndex <= -1) {
+					entry.warn("missing arg+lvt index "+lvIndex+" for method "+method);
+					return null;
+				} else {
+					varIndex = index.findByLv(lvIndex, startOpIdx);
+
+					if (varIndex == -1) {
+						entry.warn("invalid lv index "+lvIndex+" for method "+method);
+						return null;
+					}
+				}
+			}
+
+			MethodVarInstance var = isArg ? method.getArg(varIndex) : method.getVar(varIndex);
+
+			if (lvIndex != -1 && var.getLvIndex() != lvIndex) {
+				entry.warn("mismatched lv index "+lvIndex+" for method "+method);
+				return null;
+			}
+
+			if (asmIndex != -1 && var.getAsmIndex() != asmIndex) {
+				entry.warn("mismatched lv asm index "+asmIndex+" for method "+method);
+				return null;
+			}
+
+			return var;
+		}
+
+		return null;
+	}
+
+	private void apply(Entry entry, MappedElementKind kind) {
+		if (entry.dstName != null && applyDstName(kind, entry.target, entry.dstName)) {
+			dstNameCounts[entry.target.getKind().ordinal()]++;
+		}
+
+		if (entry.comment != null && (entry.target.getMappedComment() == null || replace)) {
+			entry.target.setMappedComment(entry.comment);
+			commentCounts[entry.target.getKind().ordinal()]++;
+		}
+	}
+
+	private boolean applyDstName(MappedElementKind targetKind, Matchable<?> target, String name) {
+		switch (targetKind) {
+		case CLASS: {
+			ClassInstance cls = (ClassInstance) target;
+
+			switch (fieldTarget) {
+			case MAPPED:
+				if (!cls.hasMappedName() || replace) {
+					if (ClassInstance.hasOuterName(name)) {
+						name = ClassInstance.getInnerName(name);
+					}
+
+					cls.setMappedName(name);
+				}
+
+				break;
+			case AUX:
+			case AUX2:
+				if (!cls.hasAuxName(fieldTarget.type.getAuxIndex()) || replace) {
+					if (ClassInstance.hasOuterName(name)) {
+						name = ClassInstance.getInnerName(name);
+					}
+
+					cls.setAuxName(fieldTarget.type.getAuxIndex(), name);
+				}
+
+				break;
+			case UID:
+				String prefix = env.getGlobal().classUidPrefix;
+
+				if (!name.startsWith(prefix)) {
+					System.out.println("Invalid uid class name "+name);
+					return false;
+				} else {
+					int innerNameStart = name.lastIndexOf('$') + 1;
+					String uidStr;
+
+					if (innerNameStart > 0) {
+						int subPrefixStart = prefix.lastIndexOf('/') + 1;
+
+						if (!name.startsWith(prefix.substring(subPrefixStart), innerNameStart)) {
+							System.out.println("Invalid uid class name "+name);
+							return false;
+						} else {
+							uidStr = name.substring(innerNameStart + prefix.length() - subPrefixStart);
+						}
+					} else {
+						uidStr = name.substring(prefix.length());
+					}
+
+					int uid = Integer.parseInt(uidStr);
+
+					if (uid < 0) {
+						System.out.println("Invalid class uid "+uid);
+						return false;
+					} else if (cls.getUid() < 0 || cls.getUid() > uid || replace) {
+						cls.setUid(uid);
+					}
+				}
+
+				break;
+			default:
+				throw new IllegalArgumentException();
+			}
+
+			break;
+		}
+		case FIELD: {
+			FieldInstance field = (FieldInstance) target;
+
+			switch (fieldTarget) {
+			case MAPPED:
+				if (!field.hasMappedName() || replace) {
+					for (FieldInstance f : field.getAllHierarchyMembers()) {
+						f.setMappedName(name);
+					}
+				}
+
+				break;
+			case AUX:
+			case AUX2:
+				if (!field.hasAuxName(fieldTarget.type.getAuxIndex()) || replace) {
+					for (FieldInstance f : field.getAllHierarchyMembers()) {
+						f.setAuxName(fieldTarget.type.getAuxIndex(), name);
+					}
+				}
+
+				break;
+			case UID:
+				String prefix = env.getGlobal().fieldUidPrefix;
+
+				if (!name.startsWith(prefix)) {
+					System.out.println("Invalid uid field name "+name);
+					return false;
+				} else {
+					int uid = Integer.parseInt(name.substring(prefix.length()));
+
+					if (uid < 0) {
+						System.out.println("Invalid field uid "+uid);
+						return false;
+					} else if (field.getUid() < 0 || field.getUid() > uid || replace) {
+						for (FieldInstance f : field.getAllHierarchyMembers()) {
+							f.setUid(uid);
+						}
+					}
+				}
+
+				break;
+			default:
+				throw new IllegalArgumentException();
+			}
+
+			break;
+		}
+		case METHOD: {
+			MethodInstance method = (MethodInstance) target;
+
+			switch (fieldTarget) {
+			case MAPPED:
+				if (!method.hasMappedName() || replace) {
+					for (MethodInstance m : method.getAllHierarchyMembers()) {
+						m.setMappedName(name);
+					}
+				}
+
+				break;
+			case AUX:
+			case AUX2:
+				if (!method.hasAuxName(fieldTarget.type.getAuxIndex()) || replace) {
+					for (MethodInstance m : method.getAllHierarchyMembers()) {
+						m.setAuxName(fieldTarget.type.getAuxIndex(), name);
+					}
+				}
+
+				break;
+			case UID:
+				String prefix = env.getGlobal().methodUidPrefix;
+
+				if (!name.startsWith(prefix)) {
+					System.out.println("Invalid uid method name "+name);
+					return false;
+				} else {
+					int uid = Integer.parseInt(name.substring(prefix.length()));
+
+					if (uid < 0) {
+						System.out.println("Invalid method uid "+uid);
+						return false;
+					} else if (method.getUid() < 0 || method.getUid() > uid || replace) {
+						for (MethodInstance m : method.getAllHierarchyMembers()) {
+							m.setUid(uid);
+						}
+					}
+				}
+
+				break;
+			default:
+				throw new IllegalArgumentException();
+			}
+
+			break;
+		}
+		case METHOD_ARG:
+		case METHOD_VAR: {
+			MethodVarInstance var = (MethodVarInstance) target;
+
+			switch (fieldTarget) {
+			case MAPPED:
+				if (!var.hasMappedName() || replace) var.setMappedName(name);
+				break;
+			case AUX:
+			case AUX2:
+				if (!var.hasAuxName(fieldTarget.type.getAuxIndex()) || replace) var.setAuxName(fieldTarget.type.getAuxIndex(), name);
+				break;
+			case UID:
+				// not applicable
+				break;
+			default:
+				throw new IllegalArgumentException();
+			}
+
+			break;
+		}
+		}
+
+		return true;
+	}
+
+	private class Recorder implements MappingVisitor {
+		@Override
+		public void visitNamespaces(String srcNamespace, List<String> dstNamespaces) {
+			dstNs = dstNamespaces.indexOf(nsTarget);
+			if (dstNs < 0) throw new RuntimeException("missing target namespace: "+nsTarget);
+		}
+
+		@Override
+		public void visitMetadata(String key, String value) {
+			if (fieldTarget == MappingField.UID) {
+				switch (key) {
+				case Mappings.metaUidNextClass: {
+					int val = Integer.parseInt(value);
+					if (replace || env.getGlobal().nextClassUid < val) env.getGlobal().nextClassUid = val;
+					break;
+				}
+				case Mappings.metaUidNextMethod: {
+					int val = Integer.parseInt(value);
+					if (replace || env.getGlobal().nextMethodUid < val) env.getGlobal().nextMethodUid = val;
+					break;
+				}
+				case Mappings.metaUidNextField: {
+					int val = Integer.parseInt(value);
+					if (replace || env.getGlobal().nextFieldUid < val) env.getGlobal().nextFieldUid = val;
+					break;
+				}
+				}
+			}
+		}
+
+		@Override
+		public boolean visitClass(String srcName) {
+			cur = cls = new ClassEntry(srcName);
+			member = null;
+			classes.add(cls);
+
+			return true;
+		}
+
+		@Override
+		public boolean visitMethod(String srcName, String srcDesc) {
+			return visitMember(MappedElementKind.METHOD, srcName, srcDesc);
+		}
+
+		@Override
+		public boolean visitField(String srcName, String srcDesc) {
+			return visitMember(MappedElementKind.FIELD, srcName, srcDesc);
+		}
+
+		private boolean visitMember(MappedElementKind kind, String srcName, String srcDesc) {
+			cur = member = new MemberEntry(kind, srcName, srcDesc);
+			cls.members.add(member);
+
+			return true;
+		}
+
+		@Override
+		public boolean visitMethodArg(int argPosition, int lvIndex, String srcArgName) {
+			return visitVar(new VarEntry(true, argPosition, lvIndex, -1, -1));
+		}
+
+		@Override
+		public boolean visitMethodVar(int asmIndex, int lvIndex, int startOpIdx, String srcArgName) {
+			return visitVar(new VarEntry(false, -1, lvIndex, startOpIdx, asmIndex));
+		}
+
+		private boolean visitVar(VarEntry var) {
+			if (member == null || member.kind != MappedElementKind.METHOD) return false;
+
+			cur = var;
+			member.vars.add(var);
+
+			return true;
+		}
+
+		@Override
+		public void visitDstName(MappedElementKind targetKind, int namespace, String name) {
+			if (namespace == dstNs) cur.dstName = name;
+		}
+
+		@Override
+		public void visitComment(MappedElementKind targetKind, String comment) {
+			cur.comment = comment;
+		}
+
+		private int dstNs;
+		private ClassEntry cls;
+		private MemberEntry member;
+		private Entry cur;
+	}
+
+	private abstract static class Entry {
+		String dstName;
+		String comment;
+		Matchable<?> target;
+	}
+
+	private static final class ClassEntry extends Entry {
+		ClassEntry(String srcName) {
+			this.srcName = srcName;
+		}
+
+		void warn(String msg) {
+			if (warnings == null) warnings = new ArrayList<>();
+			warnings.add(msg);
+		}
+
+		final String srcName;
+		final List<MemberEntry> members = new ArrayList<>();
+		List<String> warnings;
+	}
+
+	private static final class MemberEntry extends Entry {
+		MemberEntry(MappedElementKind kind, String srcName, String srcDesc) {
+			this.kind = kind;
+			this.srcName = srcName;
+			this.srcDesc = srcDesc;
+		}
+
+		final MappedElementKind kind;
+		final String srcName;
+		final String srcDesc;
+		final List<VarEntry> vars = new ArrayList<>(0);
+	}
+
+	private static final class VarEntry extends Entry {
+		VarEntry(boolean isArg, int argPosition, int lvIndex, int startOpIdx, int asmIndex) {
+			this.isArg = isArg;
+			this.argPosition = argPosition;
+			this.lvIndex = lvIndex;
+			this.startOpIdx = startOpIdx;
+			this.asmIndex = asmIndex;
+		}
+
+		final boolean isArg;
+		final int argPosition;
+		final int lvIndex;
+		final int startOpIdx;
+		final int asmIndex;
+	}
+
+	/**
+	 * Members of a class by name and by name+desc in a non-plain namespace, ambiguous keys map to null.
+	 *
+	 * <p>Misses fall back to the exact lookup in {@link ClassInstance}, which also yields null for ambiguous keys.
+	 */
+	private static final class MemberIndex {
+		MemberIndex(ClassInstance cls, NameType type) {
+			for (MethodInstance method : cls.getMethods()) {
+				add(methods, method, type);
+			}
+
+			for (FieldInstance field : cls.getFields()) {
+				add(fields, field, type);
+			}
+		}
+
+		private static <T extends MemberInstance<T>> void add(Map<String, T> index, T member, NameType type) {
+			String name = member.getName(type);
+			if (name == null) return;
+
+			addUnique(index, name, member);
+
+			String desc = member.getDesc(type);
+			if (desc != null) addUnique(index, getKey(name, desc), member);
+		}
+
+		private static <T> void addUnique(Map<String, T> index, String key, T member) {
+			if (index.containsKey(key)) {
+				index.put(key, null);
+			} else {
+				index.put(key, member);
+			}
+		}
+
+		MethodInstance getMethod(ClassInstance cls, String name, String desc, NameType type) {
+			MethodInstance ret = methods.get(desc != null ? getKey(name, desc) : name);
+
+			return ret != null ? ret : cls.getMethod(name, desc, type);
+		}
+
+		FieldInstance getField(ClassInstance cls, String name, String desc, NameType type) {
+			FieldInstance ret = fields.get(desc != null ? getKey(name, desc) : name);
+
+			return ret != null ? ret : cls.getField(name, desc, type);
+		}
+
+		private static String getKey(String name, String desc) {
+			return name.concat(";").concat(desc); // ; can't be part of a member name
+		}
+
+		private final Map<String, MethodInstance> methods = new HashMap<>();
+		private final Map<String, FieldInstance> fields = new HashMap<>();
+	}
+
+	/**
+	 * Method vars by asm index and by lv index, the latter sorted by start op for findByLv.
+	 */
+	private static final class VarIndex {
+		VarIndex(MethodVarInstance[] vars) {
+			for (MethodVarInstance var : vars) {
+				byAsm.putIfAbsent(var.getAsmIndex(), var);
+				byLv.computeIfAbsent(var.getLvIndex(), ignore -> new ArrayList<>(1)).add(var);
+			}
+
+			for (List<MethodVarInstance> list : byLv.values()) {
+				if (list.size() > 1) list.sort(Comparator.comparingInt(MethodVarInstance::getStartOpIdx)); // stable, keeps index order for ties
+			}
+		}
+
+		int findByAsm(int asmIndex) {
+			MethodVarInstance ret = byAsm.get(asmIndex);
+
+			return ret != null ? ret.getIndex() : -1;
+		}
+
+		int findByLv(int lvIndex, int startOpIdx) {
+			List<MethodVarInstance> list = byLv.get(lvIndex);
+			if (list == null) return -1;
+
+			for (MethodVarInstance var : list) {
+				if (var.getStartOpIdx() >= startOpIdx) { // assumes matcher's startInsn is not early, also works with startInsn == -1
+					return var.getIndex();
+				}
+			}
+
+			return -1;
+		}
+
+		private final Map<Integer, MethodVarInstance> byAsm = new HashMap<>();
+		private final Map<Integer, List<MethodVarInstance>> byLv = new HashMap<>();
+	}
+
+	private final String nsTarget;
+	private final MappingField fieldSource;
+	private final MappingField fieldTarget;
+	private final LocalClassEnv env;
+	private final boolean replace;
+	private final List<ClassEntry> classes = new ArrayList<>();
+	private Map<String, ClassInstance> classIndex;
+	private final int[] dstNameCounts = new int[MatchableKind.VALUES.length];
+	private final int[] commentCounts = new int[MatchableKind.VALUES.length];
+}
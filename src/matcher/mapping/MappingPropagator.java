@@ -1,9 +1,17 @@
 package matcher.mapping;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.DoubleConsumer;
 
+import matcher.Log;
+import matcher.Matcher;
 import matcher.NameType;
 import matcher.Util;
 import matcher.type.ClassEnvironment;
@@ -13,83 +21,123 @@ import matcher.type.MethodInstance;
 import matcher.type.MethodVarInstance;
 
 public final class MappingPropagator {
+	/**
+	 * Copy mapped method and arg names to the hierarchy members lacking them.
+	 *
+	 * <p>The method hierarchies are disjoint, so they get partitioned upfront and processed in parallel. If hierarchy
+	 * members disagree on a name, the member whose class id sorts first wins.
+	 */
 	public static boolean propagateNames(ClassEnvironment env, DoubleConsumer progressReceiver) {
-		int total = env.getClassesB().size();
-		int current = 0;
-		Set<MethodInstance> checked = Util.newIdentityHashSet();
-		int propagatedMethodNames = 0;
-		int propagatedArgNames = 0;
+		long startTime = System.nanoTime();
+
+		// partition into hierarchies needing propagation
+
+		Set<Set<MethodInstance>> seen = Util.newIdentityHashSet();
+		List<Set<MethodInstance>> hierarchies = new ArrayList<>();
 
 		for (ClassInstance cls : env.getClassesB()) {
-			if (cls.getMethods().length > 0) {
-				for (MethodInstance method : cls.getMethods()) {
-					if (method.getAllHierarchyMembers().size() <= 1) continue;
-					if (checked.contains(method)) continue;
+			for (MethodInstance method : cls.getMethods()) {
+				Set<MethodInstance> hierarchy = method.getAllHierarchyMembers();
+				if (hierarchy.size() <= 1 || !seen.add(hierarchy)) continue;
+
+				hierarchies.add(hierarchy);
+			}
+		}
+
+		long partitionTime = System.nanoTime();
 
-					String name = method.hasMappedName() || !method.isNameObfuscated() ? method.getName(NameType.MAPPED_PLAIN) : null;
-					if (name != null && method.hasAllArgsMapped()) continue;
+		// collect names from all hierarchy members
 
-					checked.addAll(method.getAllHierarchyMembers());
+		Map<Set<MethodInstance>, HierarchyNames> names = new ConcurrentHashMap<>();
 
-					// collect names from all hierarchy members
+		Matcher.runInParallel(hierarchies, hierarchy -> {
+			HierarchyNames res = collectNames(hierarchy);
+			if (res != null) names.put(hierarchy, res);
+		}, progress -> progressReceiver.accept(progress * 0.5));
 
-					final int argCount = method.getArgs().length;
-					String[] argNames = new String[argCount];
-					int missingArgNames = argCount;
+		long collectTime = System.nanoTime();
 
-					collectLoop: for (MethodInstance m : method.getAllHierarchyMembers()) {
-						if (name == null && (method.hasMappedName() || !method.isNameObfuscated())) {
-							name = method.getName(NameType.MAPPED_PLAIN);
+		// apply names to all hierarchy members that don't have any yet
 
-							if (missingArgNames == 0) break;
-						}
+		AtomicInteger propagatedMethodNames = new AtomicInteger();
+		AtomicInteger propagatedArgNames = new AtomicInteger();
 
-						if (missingArgNames > 0) {
-							assert m.getArgs().length == argCount;
+		Matcher.runInParallel(new ArrayList<>(names.values()), res -> {
+			int methodNames = 0;
+			int argNames = 0;
 
-							for (int i = 0; i < argCount; i++) {
-								MethodVarInstance arg;
+			for (MethodInstance m : res.members) {
+				if (res.name != null && !m.hasMappedName()) {
+					m.setMappedName(res.name);
+					methodNames++;
+				}
 
-								if (argNames[i] == null && (arg = m.getArg(i)).hasMappedName()) {
-									argNames[i] = arg.getName(NameType.MAPPED_PLAIN);
-									missingArgNames--;
+				for (int i = 0; i < res.argNames.length; i++) {
+					MethodVarInstance arg;
 
-									if (name != null && missingArgNames == 0) break collectLoop;
-								}
-							}
-						}
+					if (res.argNames[i] != null && !(arg = m.getArg(i)).hasMappedName()) {
+						arg.setMappedName(res.argNames[i]);
+						argNames++;
 					}
+				}
+			}
 
-					if (name == null && missingArgNames == argCount) continue; // nothing found
+			propagatedMethodNames.addAndGet(methodNames);
+			propagatedArgNames.addAndGet(argNames);
+		}, progress -> progressReceiver.accept(0.5 + progress * 0.5));
 
-					// apply names to all hierarchy members that don't have any yet
+		long applyTime = System.nanoTime();
 
-					for (MethodInstance m : method.getAllHierarchyMembers()) {
-						if (name != null && !m.hasMappedName()) {
-							m.setMappedName(name);
-							propagatedMethodNames++;
-						}
+		Log.info("Propagated %d method names, %d method arg names.", propagatedMethodNames.get(), propagatedArgNames.get());
+		Log.debug("Propagation: partitioned %d hierarchies in %.1f ms, collected names for %d in %.1f ms, applied in %.1f ms",
+				hierarchies.size(), (partitionTime - startTime) * 1e-6,
+				names.size(), (collectTime - partitionTime) * 1e-6,
+				(applyTime - collectTime) * 1e-6);
 
-						for (int i = 0; i < argCount; i++) {
-							MethodVarInstance arg;
+		return propagatedMethodNames.get() > 0 || propagatedArgNames.get() > 0;
+	}
 
-							if (argNames[i] != null && !(arg = m.getArg(i)).hasMappedName()) {
-								arg.setMappedName(argNames[i]);
-								propagatedArgNames++;
-							}
-						}
-					}
-				}
+	private static HierarchyNames collectNames(Set<MethodInstance> hierarchy) {
+		List<MethodInstance> members = new ArrayList<>(hierarchy);
+		members.sort(Comparator.comparing(m -> m.getCls().getId()));
+
+		final int argCount = members.get(0).getArgs().length;
+		String name = null;
+		String[] argNames = new String[argCount];
+		int missingArgNames = argCount;
+
+		for (MethodInstance m : members) {
+			assert m.getArgs().length == argCount;
+
+			if (name == null && (m.hasMappedName() || !m.isNameObfuscated())) {
+				name = m.getName(NameType.MAPPED_PLAIN);
 			}
 
-			if (((++current & (1 << 4) - 1)) == 0) {
-				progressReceiver.accept((double) current / total);
+			for (int i = 0; i < argCount; i++) {
+				MethodVarInstance arg;
+
+				if (argNames[i] == null && (arg = m.getArg(i)).hasMappedName()) {
+					argNames[i] = arg.getName(NameType.MAPPED_PLAIN);
+					missingArgNames--;
+				}
 			}
 		}
 
-		System.out.printf("Propagated %d method names, %d method arg names.", propagatedMethodNames, propagatedArgNames);
+		if (name == null && missingArgNames == argCount) return null; // nothing found
+
+		return new HierarchyNames(members, name, argNames);
+	}
+
+	private static final class HierarchyNames {
+		HierarchyNames(List<MethodInstance> members, String name, String[] argNames) {
+			this.members = members;
+			this.name = name;
+			this.argNames = argNames;
+		}
 
-		return propagatedMethodNames > 0 || propagatedArgNames > 0;
+		final List<MethodInstance> members;
+		final String name;
+		final String[] argNames;
 	}
 
 	/**
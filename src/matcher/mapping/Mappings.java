@@ -6,23 +6,25 @@ import java.io.UncheckedIOException;
 import java.net.URI;
 import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.objectweb.asm.tree.MethodNode;
 
 import net.fabricmc.mappingio.FlatMappingVisitor;
-import net.fabricmc.mappingio.MappedElementKind;
-import net.fabricmc.mappingio.MappingReader;
 import net.fabricmc.mappingio.MappingVisitor;
 import net.fabricmc.mappingio.MappingWriter;
-import net.fabricmc.mappingio.adapter.MappingSourceNsSwitch;
 import net.fabricmc.mappingio.adapter.RegularAsFlatMappingVisitor;
 import net.fabricmc.mappingio.format.MappingFormat;
 
+import matcher.Matcher;
 import matcher.NameType;
 import matcher.Util;
 import matcher.type.ClassEnv;
@@ -31,7 +33,6 @@ import matcher.type.FieldInstance;
 import matcher.type.LocalClassEnv;
 import matcher.type.Matchable;
 import matcher.type.MatchableKind;
-import matcher.type.MemberInstance;
 import matcher.type.MethodInstance;
 import matcher.type.MethodVarInstance;
 
@@ -41,714 +42,355 @@ public class Mappings {
 			MappingField fieldSource, MappingField fieldTarget,
 			LocalClassEnv env, final boolean replace) throws IOException {
 		assert fieldTarget != MappingField.PLAIN;
-		int[] dstNameCounts = new int[MatchableKind.VALUES.length];
-		int[] commentCounts = new int[MatchableKind.VALUES.length];
-		Set<String> warnedClasses = new HashSet<>();
+		MappingImporter importer = new MappingImporter(nsTarget, fieldSource, fieldTarget, env, replace);
 
 		try {
-			MappingReader.read(path, format, new MappingSourceNsSwitch(new MappingVisitor() {
-				@Override
-				public void visitNamespaces(String srcNamespace, List<String> dstNamespaces) {
-					dstNs = dstNamespaces.indexOf(nsTarget);
-					if (dstNs < 0) throw new RuntimeException("missing target namespace: "+nsTarget);
-				}
-
-				@Override
-				public void visitMetadata(String key, String value) {
-					if (fieldTarget == MappingField.UID) {
-						switch (key) {
-						case Mappings.metaUidNextClass: {
-							int val = Integer.parseInt(value);
-							if (replace || env.getGlobal().nextClassUid < val) env.getGlobal().nextClassUid = val;
-							break;
-						}
-						case Mappings.metaUidNextMethod: {
-							int val = Integer.parseInt(value);
-							if (replace || env.getGlobal().nextMethodUid < val) env.getGlobal().nextMethodUid = val;
-							break;
-						}
-						case Mappings.metaUidNextField: {
-							int val = Integer.parseInt(value);
-							if (replace || env.getGlobal().nextFieldUid < val) env.getGlobal().nextFieldUid = val;
-							break;
-						}
-						}
-					}
-				}
-
-				@Override
-				public boolean visitClass(String srcName) {
-					method = null;
-					field = null;
-					arg = null;
-					var = null;
-
-					cur = cls = findClass(srcName, fieldSource, env);
-
-					if (cls == null) {
-						if (warnedClasses.add(srcName)) System.out.println("can't find mapped class "+srcName);
-						return false;
-					}
-
-					return true;
-				}
-
-				@Override
-				public boolean visitMethod(String srcName, String srcDesc) {
-					field = null;
-					arg = null;
-					var = null;
-
-					cur = method = cls.getMethod(srcName, srcDesc, fieldSource.type);
-
-					if (method == null || !method.isReal()) {
-						System.out.printf("can't find mapped method %s/%s%s%n",
-								cls.getName(fieldSource.type), srcName, srcDesc);
-						return false;
-					}
-
-					return true;
-				}
-
-				@Override
-				public boolean visitMethodArg(int argPosition, int lvIndex, String srcArgName) {
-					var = null;
-
-					cur = arg = getMethodVar(argPosition, lvIndex, -1, -1, true);
-
-					if (arg == null) {
-						return false;
-					}
-
-					return true;
-				}
-
-				@Override
-				public boolean visitMethodVar(int asmIndex, int lvIndex, int startOpIdx, String srcArgName) {
-					arg = null;
+			importer.read(path, format, nsSource);
+			importer.resolve();
+			importer.apply();
+		} catch (Throwable t) {
+			clear(env);
+			throw t;
+		}
 
-					cur = var = getMethodVar(-1, lvIndex, startOpIdx, asmIndex, false);
+		System.out.printf("Loaded mappings for %d classes, %d methods (%d args, %d vars) and %d fields (comments: %d/%d/%d).%n",
+				importer.getDstNameCount(MatchableKind.CLASS),
+				importer.getDstNameCount(MatchableKind.METHOD),
+				importer.getDstNameCount(MatchableKind.METHOD_ARG),
+				importer.getDstNameCount(MatchableKind.METHOD_VAR),
+				importer.getDstNameCount(MatchableKind.FIELD),
+				importer.getCommentCount(MatchableKind.CLASS),
+				importer.getCommentCount(MatchableKind.METHOD),
+				importer.getCommentCount(MatchableKind.FIELD));
+	}
 
-					if (var == null) {
-						return false;
-					}
+	public static boolean save(Path file, MappingFormat format, LocalClassEnv env,
+			List<NameType> nsTypes, List<String> nsNames,
+			MappingsExportVerbosity verbosity, boolean forAnyInput, boolean fieldsFirst) throws IOException {
+		return save(Collections.singletonList(new MappingsExportTarget(file, format, nsTypes, nsNames)), env, verbosity, forAnyInput, fieldsFirst, false);
+	}
 
-					return true;
-				}
+	/**
+	 * Export the mappings of env into multiple targets with a single traversal.
+	 *
+	 * <p>Shared decisions like the input roots for forAnyInput are only computed once. The export data of each class
+	 * is determined once per distinct set of namespace types in parallel and written into all targets using it. The
+	 * target files are written sequentially unless parallelWrite is set.
+	 */
+	public static boolean save(List<MappingsExportTarget> targets, LocalClassEnv env,
+			MappingsExportVerbosity verbosity, boolean forAnyInput, boolean fieldsFirst, boolean parallelWrite) throws IOException {
+		if (targets.isEmpty()) throw new IllegalArgumentException("no targets");
 
-				private MethodVarInstance getMethodVar(int varIndex, int lvIndex, int startOpIdx, int asmIndex, boolean isArg) {
-					if (isArg && varIndex < -1 || varIndex >= method.getArgs().length) {
-						System.out.println("invalid var index "+varIndex+" for method "+method);
-					} else if (lvIndex < -1 || lvIndex >= (isArg ? method.getArgs() : method.getVars()).length * 2 + 1) {
-						System.out.println("invalid lv index "+lvIndex+" for method "+method);
-					} else if (asmIndex < -1) {
-						System.out.println("invalid lv asm index "+asmIndex+" for method "+method);
-					} else {
-						if (!isArg || varIndex == -1) {
-							if (asmIndex >= 0) {
-								varIndex = findVarIndexByAsm(isArg ? method.getArgs() : method.getVars(), asmIndex);
-
-								if (varIndex == -1) {
-									System.out.println("invalid lv asm index "+asmIndex+" for method "+method);
-									return null;
-								}
-							} else if (lvIndex <= -1) {
-								System.out.println("missing arg+lvt index "+lvIndex+" for method "+method);
-								return null;
-							} else {
-								varIndex = findVarIndexByLv(isArg ? method.getArgs() : method.getVars(), lvIndex, startOpIdx);
-
-								if (varIndex == -1) {
-									System.out.println("invalid lv index "+lvIndex+" for method "+method);
-									return null;
-								}
-							}
-						}
-
-						MethodVarInstance var = isArg ? method.getArg(varIndex) : method.getVar(varIndex);
-
-						if (lvIndex != -1 && var.getLvIndex() != lvIndex) {
-							System.out.println("mismatched lv index "+lvIndex+" for method "+method);
-							return null;
-						}
-
-						if (asmIndex != -1 && var.getAsmIndex() != asmIndex) {
-							System.out.println("mismatched lv asm index "+asmIndex+" for method "+method);
-							return null;
-						}
-
-						return var;
-					}
+		List<ClassInstance> classes = new ArrayList<>(env.getClasses());
+		classes.removeIf(cls -> !cls.isInput() || !cls.isReal());
+		if (classes.isEmpty()) return false;
 
-					return null;
-				}
+		Set<MethodInstance> anyInputRoots = forAnyInput ? getAnyInputRoots(classes) : null;
+		Map<List<NameType>, PlanGroup> groups = new LinkedHashMap<>();
+		List<TargetState> states = new ArrayList<>(targets.size());
 
-				@Override
-				public boolean visitField(String srcName, String srcDesc) {
-					method = null;
-					arg = null;
-					var = null;
+		for (MappingsExportTarget target : targets) {
+			PlanGroup group = groups.get(target.nsTypes);
 
-					cur = field = cls.getField(srcName, srcDesc, fieldSource.type);
+			if (group == null) {
+				group = new PlanGroup(target.nsTypes, classes);
+				NameType srcNs = target.nsTypes.get(0);
 
-					if (field == null || !field.isReal()) {
-						System.out.println("can't find mapped field "+cls.getName(fieldSource.type)+"/"+srcName);
-						return false;
-					}
+				MappedElementComparators.sortByKey(group.classes, cls -> cls.getName(srcNs), MappedElementComparators.nameShortFirstNestaware());
 
-					return true;
+				if (verbosity == MappingsExportVerbosity.MINIMAL) {
+					group.hierarchyOwners = getHierarchyOwners(group.classes, target.nsTypes, anyInputRoots);
 				}
 
-				@Override
-				public void visitDstName(MappedElementKind targetKind, int namespace, String name) {
-					if (namespace != dstNs) return;
-
-					switch (targetKind) {
-					case CLASS:
-						switch (fieldTarget) {
-						case MAPPED:
-							if (!cls.hasMappedName() || replace) {
-								if (ClassInstance.hasOuterName(name)) {
-									name = ClassInstance.getInnerName(name);
-								}
-
-								cls.setMappedName(name);
-							}
-
-							break;
-						case AUX:
-						case AUX2:
-							if (!cls.hasAuxName(fieldTarget.type.getAuxIndex()) || replace) {
-								if (ClassInstance.hasOuterName(name)) {
-									name = ClassInstance.getInnerName(name);
-								}
-
-								cls.setAuxName(fieldTarget.type.getAuxIndex(), name);
-							}
-
-							break;
-						case UID:
-							String prefix = env.getGlobal().classUidPrefix;
-
-							if (!name.startsWith(prefix)) {
-								System.out.println("Invalid uid class name "+name);
-								return;
-							} else {
-								int innerNameStart = name.lastIndexOf('$') + 1;
-								String uidStr;
-
-								if (innerNameStart > 0) {
-									int subPrefixStart = prefix.lastIndexOf('/') + 1;
-
-									if (!name.startsWith(prefix.substring(subPrefixStart), innerNameStart)) {
-										System.out.println("Invalid uid class name "+name);
-										return;
-									} else {
-										uidStr = name.substring(innerNameStart + prefix.length() - subPrefixStart);
-									}
-								} else {
-									uidStr = name.substring(prefix.length());
-								}
-
-								int uid = Integer.parseInt(uidStr);
-
-								if (uid < 0) {
-									System.out.println("Invalid class uid "+uid);
-									return;
-								} else if (cls.getUid() < 0 || cls.getUid() > uid || replace) {
-									cls.setUid(uid);
-								}
-							}
-
-							break;
-						default:
-							throw new IllegalArgumentException();
-						}
-
-						break;
-					case FIELD:
-						switch (fieldTarget) {
-						case MAPPED:
-							if (!field.hasMappedName() || replace) {
-								for (FieldInstance f : field.getAllHierarchyMembers()) {
-									f.setMappedName(name);
-								}
-							}
-
-							break;
-						case AUX:
-						case AUX2:
-							if (!field.hasAuxName(fieldTarget.type.getAuxIndex()) || replace) {
-								for (FieldInstance f : field.getAllHierarchyMembers()) {
-									f.setAuxName(fieldTarget.type.getAuxIndex(), name);
-								}
-							}
-
-							break;
-						case UID:
-							String prefix = env.getGlobal().fieldUidPrefix;
-
-							if (!name.startsWith(prefix)) {
-								System.out.println("Invalid uid field name "+name);
-								return;
-							} else {
-								int uid = Integer.parseInt(name.substring(prefix.length()));
-
-								if (uid < 0) {
-									System.out.println("Invalid field uid "+uid);
-									return;
-								} else if (field.getUid() < 0 || field.getUid() > uid || replace) {
-									for (FieldInstance f : field.getAllHierarchyMembers()) {
-										f.setUid(uid);
-									}
-								}
-							}
-
-							break;
-						default:
-							throw new IllegalArgumentException();
-						}
-
-						break;
-					case METHOD:
-						switch (fieldTarget) {
-						case MAPPED:
-							if (!method.hasMappedName() || replace) {
-								for (MethodInstance m : method.getAllHierarchyMembers()) {
-									m.setMappedName(name);
-								}
-							}
-
-							break;
-						case AUX:
-						case AUX2:
-							if (!method.hasAuxName(fieldTarget.type.getAuxIndex()) || replace) {
-								for (MethodInstance m : method.getAllHierarchyMembers()) {
-									m.setAuxName(fieldTarget.type.getAuxIndex(), name);
-								}
-							}
-
-							break;
-						case UID:
-							String prefix = env.getGlobal().methodUidPrefix;
-
-							if (!name.startsWith(prefix)) {
-								System.out.println("Invalid uid method name "+name);
-								return;
-							} else {
-								int uid = Integer.parseInt(name.substring(prefix.length()));
-
-								if (uid < 0) {
-									System.out.println("Invalid method uid "+uid);
-									return;
-								} else if (method.getUid() < 0 || method.getUid() > uid || replace) {
-									for (MethodInstance m : method.getAllHierarchyMembers()) {
-										m.setUid(uid);
-									}
-								}
-							}
-
-							break;
-						default:
-							throw new IllegalArgumentException();
-						}
-
-						break;
-					case METHOD_ARG:
-						switch (fieldTarget) {
-						case MAPPED:
-							if (!arg.hasMappedName() || replace) arg.setMappedName(name);
-							break;
-						case AUX:
-						case AUX2:
-							if (!arg.hasAuxName(fieldTarget.type.getAuxIndex()) || replace) arg.setAuxName(fieldTarget.type.getAuxIndex(), name);
-							break;
-						case UID:
-							// not applicable
-							break;
-						default:
-							throw new IllegalArgumentException();
-						}
-
-						break;
-					case METHOD_VAR:
-						switch (fieldTarget) {
-						case MAPPED:
-							if (!var.hasMappedName() || replace) var.setMappedName(name);
-							break;
-						case AUX:
-						case AUX2:
-							if (!var.hasAuxName(fieldTarget.type.getAuxIndex()) || replace) var.setAuxName(fieldTarget.type.getAuxIndex(), name);
-							break;
-						case UID:
-							// not applicable
-							break;
-						default:
-							throw new IllegalArgumentException();
-						}
+				groups.put(target.nsTypes, group);
+			}
 
-						break;
-					}
+			states.add(new TargetState(target, group));
+		}
 
-					dstNameCounts[cur.getKind().ordinal()]++;
-				}
+		// determine the export data of all classes for each namespace set in parallel, then write it in class order
 
-				@Override
-				public void visitComment(MappedElementKind targetKind, String comment) {
-					if (cur.getMappedComment() == null || replace) {
-						cur.setMappedComment(comment);
-						commentCounts[cur.getKind().ordinal()]++;
-					}
-				}
-
-				private int dstNs;
+		Matcher.runInParallel(classes, cls -> {
+			for (PlanGroup group : groups.values()) {
+				ClassExportPlan plan = planClass(cls, group.nsTypes, verbosity, anyInputRoots, group.hierarchyOwners);
+				if (plan != null) group.plans.put(cls, plan);
+			}
+		}, progress -> { });
 
-				private ClassInstance cls;
-				private FieldInstance field;
-				private MethodInstance method;
-				private MethodVarInstance arg;
-				private MethodVarInstance var;
+		if (parallelWrite && states.size() > 1) {
+			Matcher.runInParallel(states, state -> write(state, fieldsFirst), progress -> { });
+		} else {
+			for (TargetState state : states) {
+				write(state, fieldsFirst);
+			}
+		}
 
-				private Matchable<?> cur;
-			}, nsSource));
-		} catch (Throwable t) {
-			clear(env);
-			throw t;
+		for (TargetState state : states) {
+			if (state.error != null) throw state.error;
 		}
 
-		System.out.printf("Loaded mappings for %d classes, %d methods (%d args, %d vars) and %d fields (comments: %d/%d/%d).%n",
-				dstNameCounts[MatchableKind.CLASS.ordinal()],
-				dstNameCounts[MatchableKind.METHOD.ordinal()],
-				dstNameCounts[MatchableKind.METHOD_ARG.ordinal()],
-				dstNameCounts[MatchableKind.METHOD_VAR.ordinal()],
-				dstNameCounts[MatchableKind.FIELD.ordinal()],
-				commentCounts[MatchableKind.CLASS.ordinal()],
-				commentCounts[MatchableKind.METHOD.ordinal()],
-				commentCounts[MatchableKind.FIELD.ordinal()]);
+		return true;
 	}
 
-	private static ClassInstance findClass(String name, MappingField type, LocalClassEnv env) {
-		switch (type) {
-		case PLAIN:
-			return env.getLocalClsByName(name);
-		case MAPPED:
-		case AUX:
-		case AUX2:
-		case UID:
-			ClassInstance ret = env.getClsByName(name, type.type);
+	private static void write(TargetState state, boolean fieldsFirst) {
+		MappingsExportTarget target = state.target;
 
-			return ret != null && !ret.isShared() ? ret : null;
-		default:
-			throw new IllegalArgumentException();
-		}
-	}
+		try (Closeable closable = target.format == MappingFormat.TINY_2 || target.format == MappingFormat.ENIGMA ? MappingWriter.create(target.file, target.format) : new MappingWriterImpl(target.file, target.format)) {
+			FlatMappingVisitor writer = closable instanceof FlatMappingVisitor ? (FlatMappingVisitor) closable : new RegularAsFlatMappingVisitor((MappingVisitor) closable);
 
-	private static int findVarIndexByLv(MethodVarInstance[] vars, int lvIndex, int startOpcodeIdx) {
-		MethodVarInstance ret = null;
+			writer.visitNamespaces(target.nsNames.get(0), target.nsNames.subList(1, target.nsNames.size()));
 
-		for (MethodVarInstance arg : vars) {
-			if (arg.getLvIndex() == lvIndex
-					&& arg.getStartOpIdx() >= startOpcodeIdx // assumes matcher's startInsn is not early, also works with startInsn == -1
-					&& (ret == null || arg.getStartOpIdx() < ret.getStartOpIdx())) {
-				ret = arg;
+			for (ClassInstance cls : state.group.classes) {
+				ClassExportPlan plan = state.group.plans.get(cls);
+				if (plan != null) plan.write(writer, target.format, fieldsFirst);
 			}
-		}
-
-		return ret != null ? ret.getIndex() : -1;
-	}
 
-	private static int findVarIndexByAsm(MethodVarInstance[] vars, int asmIndex) {
-		for (MethodVarInstance arg : vars) {
-			if (arg.getAsmIndex() == asmIndex) return arg.getIndex();
+			writer.visitEnd();
+		} catch (UncheckedIOException e) {
+			state.error = e.getCause();
+		} catch (IOException e) {
+			state.error = e;
 		}
-
-		return -1;
 	}
 
-	public static boolean save(Path file, MappingFormat format, LocalClassEnv env,
-			List<NameType> nsTypes, List<String> nsNames,
-			MappingsExportVerbosity verbosity, boolean forAnyInput, boolean fieldsFirst) throws IOException {
-		if (nsTypes.size() < 2 || nsTypes.size() > 2 && !format.hasNamespaces) throw new IllegalArgumentException("invalid namespace count");
-		if (nsNames != null && nsNames.size() != nsTypes.size()) throw new IllegalArgumentException("namespace types and names don't have the same number of entries");
-
-		if (nsNames == null) {
-			nsNames = new ArrayList<>(nsTypes.size());
-		} else {
-			nsNames = new ArrayList<>(nsNames);
+	/**
+	 * Determine the methods that are a hierarchy root within any of the inputs providing them while having parents.
+	 *
+	 * <p>The parent walks are memoized per hierarchy, so each hierarchy is only processed once with all its members
+	 * reusing the results for their shared ancestors.
+	 */
+	private static Set<MethodInstance> getAnyInputRoots(List<ClassInstance> classes) {
+		Set<Set<MethodInstance>> hierarchies = Util.newIdentityHashSet();
+
+		for (ClassInstance cls : classes) {
+			for (MethodInstance m : cls.getMethods()) {
+				if (!m.getParents().isEmpty()) hierarchies.add(m.getAllHierarchyMembers());
+			}
 		}
 
-		for (int i = 0; i < nsTypes.size(); i++) {
-			if (i >= nsNames.size() || nsNames.get(i) == null || nsNames.get(i).isEmpty()) {
-				String name = getNamespaceName(nsTypes.get(i));
+		Set<MethodInstance> ret = ConcurrentHashMap.newKeySet();
 
-				if (i == nsNames.size()) { // > shouldn't be possible
-					nsNames.add(name);
-				} else {
-					nsNames.set(i, name);
+		Matcher.runInParallel(new ArrayList<>(hierarchies), hierarchy -> {
+			Map<String, Map<URI, Map<MethodInstance, Boolean>>> memo = new HashMap<>();
+
+			for (MethodInstance m : hierarchy) {
+				if (!m.getParents().isEmpty()
+						&& m.getCls().isInput() && m.getCls().isReal()
+						&& isAnyInputRoot(m, memo.computeIfAbsent(m.getName().concat(m.getDesc()), ignore -> new HashMap<>()))) {
+					ret.add(m);
 				}
 			}
-		}
+		}, progress -> { });
 
-		NameType sortNs = nsTypes.get(0);
-		Comparator<ClassInstance> clsCmp = MappedElementComparators.byNameShortFirstNestaware(sortNs);
-		Comparator<MemberInstance<?>> memberCmp = MappedElementComparators.byNameDescConcat(sortNs);
-		Comparator<MethodVarInstance> methodArgCmp = MappedElementComparators.byLvIndex();
-		Comparator<MethodVarInstance> methodVarCmp = MappedElementComparators.byLvIndex();
+		return ret;
+	}
 
-		List<ClassInstance> classes = new ArrayList<>(env.getClasses());
-		classes.removeIf(cls -> !cls.isInput() || !cls.isReal());
-		if (classes.isEmpty()) return false;
+	private static boolean isRoot(MethodInstance method, Set<MethodInstance> anyInputRoots) {
+		return method.getParents().isEmpty() || anyInputRoots != null && anyInputRoots.contains(method);
+	}
 
-		classes.sort(clsCmp);
+	/**
+	 * Determine the method exporting the names of each hierarchy with multiple members for minimal verbosity, which is
+	 * the first eligible one in export order. This is done upfront so the classes can be exported independently.
+	 */
+	private static Map<Set<MethodInstance>, MethodInstance> getHierarchyOwners(List<ClassInstance> classes, List<NameType> nsTypes, Set<MethodInstance> anyInputRoots) {
+		NameType srcNs = nsTypes.get(0);
+		Map<ClassInstance, List<MethodInstance>> candidates = new ConcurrentHashMap<>();
 
-		String[] dstClassNames = new String[nsTypes.size() - 1];
-		String[] dstMemberNames = new String[dstClassNames.length];
-		String[] dstMemberDescs = new String[dstClassNames.length];
-		String[] dstVarNames = new String[dstClassNames.length];
+		Matcher.runInParallel(classes, cls -> {
+			if (cls.getName(srcNs) == null) return;
 
-		List<MethodInstance> methods = new ArrayList<>();
-		List<FieldInstance> fields = new ArrayList<>();
-		List<MethodVarInstance> vars = new ArrayList<>();
-		Set<Set<MethodInstance>> exportedHierarchies = verbosity == MappingsExportVerbosity.MINIMAL ? Util.newIdentityHashSet() : null;
+			List<MethodInstance> methods = new ArrayList<>();
 
-		try (Closeable closable = format == MappingFormat.TINY_2 || format == MappingFormat.ENIGMA ? MappingWriter.create(file, format) : new MappingWriterImpl(file, format)) {
-			FlatMappingVisitor writer = closable instanceof FlatMappingVisitor ? (FlatMappingVisitor) closable : new RegularAsFlatMappingVisitor((MappingVisitor) closable);
+			for (MethodInstance m : cls.getMethods()) {
+				if (m.getAllHierarchyMembers().size() <= 1) continue;
 
-			writer.visitNamespaces(nsNames.get(0), nsNames.subList(1, nsNames.size()));
+				String srcName = m.getName(srcNs);
 
-			for (ClassInstance cls : classes) {
-				String srcClsName = cls.getName(nsTypes.get(0));
-				if (srcClsName == null) continue;
-				boolean hasAnyDstName = false;
+				if (srcName != null
+						&& isRoot(m, anyInputRoots)
+						&& hasAnyNames(m, srcName, nsTypes)) {
+					methods.add(m);
+				}
+			}
 
-				for (int i = 1; i < nsTypes.size(); i++) {
-					NameType dstType = nsTypes.get(i);
-					String dstName = cls.getName(dstType);
+			if (methods.isEmpty()) return;
 
-					if (dstName != null && (dstName.equals(srcClsName) || dstType != dstType.withMapped(false) && cls.hasNoFullyMappedName())) {
-						// don't save no-op or partial mappings (partial = only outer class is mapped)
-						dstName = null;
-					}
+			MappedElementComparators.sortByKey(methods, m -> MappedElementComparators.getNameDescKey(m, srcNs), Comparator.<String>naturalOrder());
+			candidates.put(cls, methods);
+		}, progress -> { });
 
-					hasAnyDstName |= dstName != null;
-					dstClassNames[i - 1] = dstName;
-				}
+		Map<Set<MethodInstance>, MethodInstance> ret = new IdentityHashMap<>();
 
-				if (!hasAnyDstName
-						&& (!format.supportsComments || cls.getMappedComment() == null)
-						&& !shouldExportAny(cls.getMethods(), format, nsTypes, verbosity, forAnyInput, exportedHierarchies)
-						&& !shouldExportAny(cls.getFields(), format, nsTypes)) {
-					continue; // no data for the class, skip
-				}
+		for (ClassInstance cls : classes) {
+			List<MethodInstance> methods = candidates.get(cls);
+			if (methods == null) continue;
 
-				if (!writer.visitClass(srcClsName, dstClassNames)) {
-					continue;
-				}
+			for (MethodInstance m : methods) {
+				ret.putIfAbsent(m.getAllHierarchyMembers(), m);
+			}
+		}
 
-				// comment
+		return ret;
+	}
 
-				if (cls.getMappedComment() != null) writer.visitClassComment(srcClsName, dstClassNames, cls.getMappedComment());
+	/**
+	 * Determine the export data of a single class with its members independent of the target format.
+	 *
+	 * @return the plan or null if there is nothing to export in any format
+	 */
+	private static ClassExportPlan planClass(ClassInstance cls, List<NameType> nsTypes,
+			MappingsExportVerbosity verbosity, Set<MethodInstance> anyInputRoots,
+			Map<Set<MethodInstance>, MethodInstance> hierarchyOwners) {
+		NameType srcNs = nsTypes.get(0);
+		String srcClsName = cls.getName(srcNs);
+		if (srcClsName == null) return null;
 
-				if (fieldsFirst) {
-					exportFields(cls, srcClsName, dstClassNames, format, nsTypes,
-							dstMemberNames, dstMemberDescs, fields, memberCmp, writer);
-				}
+		String[] dstClassNames = new String[nsTypes.size() - 1];
+		boolean hasAnyDstName = false;
 
-				exportMethods(cls, srcClsName, dstClassNames,
-						format, nsTypes, verbosity, forAnyInput,
-						dstMemberNames, dstMemberDescs, dstVarNames,
-						methods, vars, exportedHierarchies,
-						memberCmp, methodArgCmp, methodVarCmp,
-						writer);
+		for (int i = 1; i < nsTypes.size(); i++) {
+			NameType dstType = nsTypes.get(i);
+			String dstName = cls.getName(dstType);
 
-				if (!fieldsFirst) {
-					exportFields(cls, srcClsName, dstClassNames, format, nsTypes,
-							dstMemberNames, dstMemberDescs, fields, memberCmp, writer);
-				}
+			if (dstName != null && (dstName.equals(srcClsName) || dstType != dstType.withMapped(false) && cls.hasNoFullyMappedName())) {
+				// don't save no-op or partial mappings (partial = only outer class is mapped)
+				dstName = null;
 			}
 
-			writer.visitEnd();
-		} catch (UncheckedIOException e) {
-			throw e.getCause();
+			hasAnyDstName |= dstName != null;
+			dstClassNames[i - 1] = dstName;
 		}
 
-		return true;
-	}
+		List<MethodInstance> methods = new ArrayList<>();
 
-	private static void exportMethods(ClassInstance cls, String srcClsName, String[] dstClassNames,
-			MappingFormat format, List<NameType> nsTypes, MappingsExportVerbosity verbosity, boolean forAnyInput,
-			String[] dstMemberNames, String[] dstMemberDescs, String[] dstVarNames,
-			List<MethodInstance> methods, List<MethodVarInstance> vars, Set<Set<MethodInstance>> exportedHierarchies,
-			Comparator<? super MethodInstance> methodCmp, Comparator<MethodVarInstance> methodArgCmp, Comparator<MethodVarInstance> methodVarCmp,
-			FlatMappingVisitor writer) throws IOException {
 		for (MethodInstance m : cls.getMethods()) {
-			if (shouldExport(m, format, nsTypes, verbosity, forAnyInput, exportedHierarchies)) methods.add(m);
+			if (m.getName(srcNs) != null) methods.add(m);
 		}
 
-		methods.sort(methodCmp);
+		MappedElementComparators.sortByKey(methods, m -> MappedElementComparators.getNameDescKey(m, srcNs), Comparator.<String>naturalOrder());
+
+		List<ClassExportPlan.MemberPlan> methodPlans = new ArrayList<>();
 
 		for (MethodInstance m : methods) {
-			assert m.getCls() == cls;
+			ClassExportPlan.MemberPlan plan = planMethod(m, nsTypes, verbosity, anyInputRoots, hierarchyOwners);
+			if (plan != null) methodPlans.add(plan);
+		}
 
-			String srcName = m.getName(nsTypes.get(0));
-			assert srcName != null; // shouldExport already verified this
-			boolean hasAnyDstName = false;
+		List<FieldInstance> fields = new ArrayList<>();
 
-			for (int i = 1; i < nsTypes.size(); i++) {
-				NameType dstType = nsTypes.get(i);
-				String dstName = m.getName(dstType);
+		for (FieldInstance f : cls.getFields()) {
+			if (f.getName(srcNs) != null) fields.add(f);
+		}
 
-				if (dstName != null && dstName.equals(srcName)) { // no-op mapping
-					dstName = null;
-				}
+		MappedElementComparators.sortByKey(fields, f -> MappedElementComparators.getNameDescKey(f, srcNs), Comparator.<String>naturalOrder());
 
-				hasAnyDstName |= dstName != null;
-				dstMemberNames[i - 1] = dstName;
-				dstMemberDescs[i - 1] = m.getDesc(dstType);
-			}
+		List<ClassExportPlan.MemberPlan> fieldPlans = new ArrayList<>();
+
+		for (FieldInstance f : fields) {
+			String srcName = f.getName(srcNs);
+			String[] dstNames = getDstNames(f, srcName, nsTypes);
+			if (dstNames == null && f.getMappedComment() == null) continue;
 
-			String[] dstMethodNames;
+			String[] dstDescs = new String[nsTypes.size() - 1];
 
-			if (hasAnyDstName && shouldExportName(m, verbosity, forAnyInput, exportedHierarchies)) {
-				if (verbosity == MappingsExportVerbosity.MINIMAL) exportedHierarchies.add(m.getAllHierarchyMembers());
-				dstMethodNames = dstMemberNames;
-			} else {
-				dstMethodNames = null;
+			for (int i = 1; i < nsTypes.size(); i++) {
+				dstDescs[i - 1] = f.getDesc(nsTypes.get(i));
 			}
 
-			String desc = m.getDesc(nsTypes.get(0));
+			fieldPlans.add(new ClassExportPlan.MemberPlan(srcName, f.getDesc(srcNs),
+					dstNames != null ? dstNames : new String[nsTypes.size() - 1], dstNames != null,
+					dstDescs, f.getMappedComment(), Collections.emptyList(), Collections.emptyList()));
+		}
 
-			if (!writer.visitMethod(srcClsName, srcName, desc, dstClassNames, dstMethodNames, dstMemberDescs)) {
-				continue;
-			}
+		if (!hasAnyDstName
+				&& cls.getMappedComment() == null
+				&& methodPlans.isEmpty()
+				&& fieldPlans.isEmpty()) {
+			return null; // no data for the class, skip
+		}
 
-			if (format.supportsComments) {
-				String comment = m.getMappedComment();
-				if (comment != null) writer.visitMethodComment(srcClsName, srcName, desc, dstClassNames, dstMethodNames, dstMemberDescs, comment);
-			}
+		return new ClassExportPlan(srcClsName, dstClassNames, hasAnyDstName, cls.getMappedComment(), methodPlans, fieldPlans);
+	}
 
-			// method args, vars
+	private static ClassExportPlan.MemberPlan planMethod(MethodInstance m, List<NameType> nsTypes,
+			MappingsExportVerbosity verbosity, Set<MethodInstance> anyInputRoots,
+			Map<Set<MethodInstance>, MethodInstance> hierarchyOwners) {
+		String srcName = m.getName(nsTypes.get(0));
+		String[] dstNames = getDstNames(m, srcName, nsTypes);
 
-			if (format.supportsArgs || format.supportsLocals) {
-				for (int k = 0; k < 2; k++) {
-					boolean isArg = k == 0;
-					MethodVarInstance[] instances;
+		if (dstNames != null && !shouldExportName(m, verbosity, anyInputRoots, hierarchyOwners)) {
+			dstNames = null;
+		}
 
-					if (isArg) { // arg
-						if (!format.supportsArgs) continue;
-						instances = m.getArgs();
-					} else { // var
-						if (!format.supportsLocals) continue;
-						instances = m.getVars();
-					}
+		List<ClassExportPlan.VarPlan> args = planVars(m.getArgs(), nsTypes);
+		List<ClassExportPlan.VarPlan> vars = planVars(m.getVars(), nsTypes);
 
-					for (MethodVarInstance arg : instances) {
-						if (shouldExport(arg, format, nsTypes)) vars.add(arg);
-					}
+		if (dstNames == null
+				&& m.getMappedComment() == null
+				&& args.isEmpty()
+				&& vars.isEmpty()) {
+			return null;
+		}
 
-					vars.sort(isArg ? methodArgCmp : methodVarCmp);
-
-					for (MethodVarInstance var : vars) {
-						assert var.getMethod() == m;
-
-						String srcVarName = var.getName(nsTypes.get(0));
-						hasAnyDstName = false;
-
-						for (int i = 1; i < nsTypes.size(); i++) {
-							NameType dstType = nsTypes.get(i);
-							String dstName = var.getName(dstType);
-
-							if (dstName != null && dstName.equals(srcVarName)) { // no-op mapping
-								dstName = null;
-							}
-
-							hasAnyDstName |= dstName != null;
-							dstVarNames[i - 1] = dstName;
-						}
-
-						if (hasAnyDstName) {
-							if (isArg) {
-								writer.visitMethodArg(srcClsName, srcName, desc, var.getIndex(), var.getLvIndex(), srcVarName,
-										dstClassNames, dstMethodNames, dstMemberDescs, dstVarNames);
-							} else {
-								writer.visitMethodVar(srcClsName, srcName, desc,
-										var.getAsmIndex(), var.getLvIndex(), var.getStartOpIdx(), srcVarName,
-										dstClassNames, dstMethodNames, dstMemberDescs, dstVarNames);
-							}
-						}
-
-						if (format.supportsComments) {
-							String comment = var.getMappedComment();
-
-							if (comment != null) {
-								if (isArg) {
-									writer.visitMethodArgComment(srcClsName, srcName, desc, var.getIndex(), var.getLvIndex(), srcVarName,
-											dstClassNames, dstMethodNames, dstMemberDescs, dstVarNames,
-											comment);
-								} else {
-									writer.visitMethodVarComment(srcClsName, srcName, desc,
-											var.getAsmIndex(), var.getLvIndex(), var.getStartOpIdx(), srcVarName,
-											dstClassNames, dstMethodNames, dstMemberDescs, dstVarNames,
-											comment);
-								}
-							}
-						}
-					}
+		String[] dstDescs = new String[nsTypes.size() - 1];
 
-					vars.clear();
-				}
-			}
+		for (int i = 1; i < nsTypes.size(); i++) {
+			dstDescs[i - 1] = m.getDesc(nsTypes.get(i));
 		}
 
-		methods.clear();
+		return new ClassExportPlan.MemberPlan(srcName, m.getDesc(nsTypes.get(0)), dstNames, dstNames != null,
+				dstDescs, m.getMappedComment(), args, vars);
 	}
 
-	private static void exportFields(ClassInstance cls, String srcClsName, String[] dstClassNames,
-			MappingFormat format, List<NameType> nsTypes,
-			String[] dstMemberNames, String[] dstMemberDescs,
-			List<FieldInstance> fields,
-			Comparator<? super FieldInstance> fieldCmp,
-			FlatMappingVisitor writer) throws IOException {
-		for (FieldInstance f : cls.getFields()) {
-			if (shouldExport(f, format, nsTypes)) fields.add(f);
+	private static List<ClassExportPlan.VarPlan> planVars(MethodVarInstance[] instances, List<NameType> nsTypes) {
+		List<MethodVarInstance> vars = new ArrayList<>();
+
+		for (MethodVarInstance var : instances) {
+			if (var.getMappedComment() != null || hasAnyNames(var, var.getName(nsTypes.get(0)), nsTypes)) vars.add(var);
 		}
 
-		fields.sort(fieldCmp);
+		if (vars.isEmpty()) return Collections.emptyList();
 
-		for (FieldInstance f : fields) {
-			assert f.getCls() == cls;
+		vars.sort(MappedElementComparators.byLvIndex());
+		List<ClassExportPlan.VarPlan> ret = new ArrayList<>(vars.size());
 
-			String srcName = f.getName(nsTypes.get(0));
-			assert srcName != null; // shouldExport already verified this
+		for (MethodVarInstance var : vars) {
+			String srcName = var.getName(nsTypes.get(0));
+			String[] dstNames = getDstNames(var, srcName, nsTypes);
 
-			for (int i = 1; i < nsTypes.size(); i++) {
-				NameType dstType = nsTypes.get(i);
-				String dstName = f.getName(dstType);
+			ret.add(new ClassExportPlan.VarPlan(var.getIndex(), var.getLvIndex(), var.getAsmIndex(), var.getStartOpIdx(), srcName,
+					dstNames != null ? dstNames : new String[nsTypes.size() - 1], dstNames != null,
+					var.getMappedComment()));
+		}
 
-				if (dstName != null && dstName.equals(srcName)) { // no-op mapping
-					dstName = null;
-				}
+		return ret;
+	}
 
-				dstMemberNames[i - 1] = dstName;
-				dstMemberDescs[i - 1] = f.getDesc(dstType);
-			}
+	/**
+	 * Get the dst names of m without no-op mappings.
+	 *
+	 * @return the names or null if there are none
+	 */
+	private static String[] getDstNames(Matchable<?> m, String srcName, List<NameType> nsTypes) {
+		String[] ret = new String[nsTypes.size() - 1];
+		boolean hasAnyDstName = false;
 
-			String desc = f.getDesc(nsTypes.get(0));
+		for (int i = 1; i < nsTypes.size(); i++) {
+			String dstName = m.getName(nsTypes.get(i));
 
-			if (!writer.visitField(srcClsName, srcName, desc, dstClassNames, dstMemberNames, dstMemberDescs)) {
-				continue;
+			if (dstName != null && dstName.equals(srcName)) { // no-op mapping
+				dstName = null;
 			}
 
-			if (format.supportsComments) {
-				String comment = f.getMappedComment();
-				if (comment != null) writer.visitFieldComment(srcClsName, srcName, desc, dstClassNames, dstMemberNames, dstMemberDescs, comment);
-			}
+			hasAnyDstName |= dstName != null;
+			ret[i - 1] = dstName;
 		}
 
-		fields.clear();
+		return hasAnyDstName ? ret : null;
 	}
 
-	private static String getNamespaceName(NameType type) {
+	static String getNamespaceName(NameType type) {
 		switch (type) {
 		case MAPPED:
 		case MAPPED_PLAIN:
@@ -774,30 +416,6 @@ public class Mappings {
 		}
 	}
 
-	private static boolean shouldExport(MethodInstance method, MappingFormat format, List<NameType> nsTypes,
-			MappingsExportVerbosity verbosity, boolean forAnyInput, Set<Set<MethodInstance>> exportedHierarchies) {
-		String srcName = method.getName(nsTypes.get(0));
-		if (srcName == null) return false;
-
-		return format.supportsComments && method.getMappedComment() != null
-				|| format.supportsArgs && shouldExportAny(method.getArgs(), format, nsTypes)
-				|| format.supportsLocals && shouldExportAny(method.getVars(), format, nsTypes)
-				|| hasAnyNames(method, srcName, nsTypes) && shouldExportName(method, verbosity, forAnyInput, exportedHierarchies);
-	}
-
-	private static boolean shouldExport(MethodVarInstance var, MappingFormat format, List<NameType> nsTypes) {
-		String srcName = var.getName(nsTypes.get(0));
-
-		return format.supportsComments && var.getMappedComment() != null || hasAnyNames(var, srcName, nsTypes);
-	}
-
-	private static boolean shouldExport(FieldInstance field, MappingFormat format, List<NameType> nsTypes) {
-		String srcName = field.getName(nsTypes.get(0));
-
-		return srcName != null
-				&& (format.supportsComments && field.getMappedComment() != null || hasAnyNames(field, srcName, nsTypes));
-	}
-
 	private static boolean hasAnyNames(Matchable<?> m, String srcName, List<NameType> nsTypes) {
 		for (int i = 1; i < nsTypes.size(); i++) {
 			String dstName = m.getName(nsTypes.get(i));
@@ -808,49 +426,30 @@ public class Mappings {
 		return false;
 	}
 
-	private static boolean shouldExportAny(MethodInstance[] methods, MappingFormat format, List<NameType> nsTypes, MappingsExportVerbosity verbosity, boolean forAnyInput, Set<Set<MethodInstance>> exportedHierarchies) {
-		for (MethodInstance m : methods) {
-			if (shouldExport(m, format, nsTypes, verbosity, forAnyInput, exportedHierarchies)) return true;
-		}
-
-		return false;
-	}
-
-	private static boolean shouldExportAny(MethodVarInstance[] vars, MappingFormat format, List<NameType> nsTypes) {
-		for (MethodVarInstance v : vars) {
-			if (shouldExport(v, format, nsTypes)) return true;
-		}
-
-		return false;
-	}
-
-	private static boolean shouldExportAny(FieldInstance[] fields, MappingFormat format, List<NameType> nsTypes) {
-		for (FieldInstance f : fields) {
-			if (shouldExport(f, format, nsTypes)) return true;
-		}
-
-		return false;
-	}
-
-	private static boolean shouldExportName(MethodInstance method, MappingsExportVerbosity verbosity, boolean forAnyInput, Set<Set<MethodInstance>> exportedHierarchies) {
+	private static boolean shouldExportName(MethodInstance method, MappingsExportVerbosity verbosity, Set<MethodInstance> anyInputRoots, Map<Set<MethodInstance>, MethodInstance> hierarchyOwners) {
 		return verbosity == MappingsExportVerbosity.FULL
 				|| method.getAllHierarchyMembers().size() == 1
-				|| (method.getParents().isEmpty() || forAnyInput && isAnyInputRoot(method))
-				&& (verbosity == MappingsExportVerbosity.ROOTS || !exportedHierarchies.contains(method.getAllHierarchyMembers())); // FIXME: forAnyInput + minimal needs to use an exportedHierarchies set per origin
+				|| isRoot(method, anyInputRoots)
+				&& (verbosity == MappingsExportVerbosity.ROOTS || hierarchyOwners.get(method.getAllHierarchyMembers()) == method); // FIXME: forAnyInput + minimal needs hierarchyOwners per origin, anyInputRoots may hold multiple roots of a hierarchy but only one owns it
 	}
 
-	private static boolean isAnyInputRoot(MethodInstance method)  {
+	/**
+	 * Check whether any origin that supplies method has no parent supplying it within the same origin.
+	 *
+	 * @param memo results of hasParentMethod by origin and child method for the name and desc of method
+	 */
+	private static boolean isAnyInputRoot(MethodInstance method, Map<URI, Map<MethodInstance, Boolean>> memo) {
 		ClassInstance cls = method.getCls();
 		String name = method.getName();
 		String desc = method.getDesc();
 
-		// check if each origin that supplies this method has a parent within the same origin
-
 		for (int i = 0; i < cls.getAsmNodes().length; i++) {
 			for (MethodNode m : cls.getAsmNodes()[i].methods) {
-				if (m.name.equals(method.getName())
-						&& m.desc.equals(method.getDesc())) {
-					if (!hasParentMethod(name, desc, method.getParents(), cls.getAsmNodeOrigin(i))) {
+				if (m.name.equals(name)
+						&& m.desc.equals(desc)) {
+					URI origin = cls.getAsmNodeOrigin(i);
+
+					if (!hasParentMethod(name, desc, method, origin, memo.computeIfAbsent(origin, ignore -> new IdentityHashMap<>()))) {
 						return true;
 					} else {
 						break;
@@ -862,29 +461,37 @@ public class Mappings {
 		return false;
 	}
 
-	private static boolean hasParentMethod(String name, String desc, Collection<MethodInstance> parents, URI reqOrigin)  {
-		// check direct parents (must supply the method from the required origin)
+	/**
+	 * Check whether any direct or indirect parent of method supplies name+desc from reqOrigin.
+	 */
+	private static boolean hasParentMethod(String name, String desc, MethodInstance method, URI reqOrigin, Map<MethodInstance, Boolean> memo) {
+		Boolean cached = memo.get(method);
+		if (cached != null) return cached;
 
-		for (MethodInstance parent : parents) {
-			ClassInstance parentCls = parent.getCls();
+		boolean ret = false;
 
-			for (int i = 0; i < parentCls.getAsmNodes().length; i++) {
-				if (parentCls.getAsmNodeOrigin(i).equals(reqOrigin)) {
-					for (MethodNode m : parentCls.getAsmNodes()[i].methods) {
-						if (m.name.equals(name)
-								&& m.desc.equals(desc)) {
-							return true;
-						}
-					}
-				}
+		for (MethodInstance parent : method.getParents()) {
+			if (suppliesMethod(parent.getCls(), name, desc, reqOrigin)
+					|| !parent.getParents().isEmpty() && hasParentMethod(name, desc, parent, reqOrigin, memo)) {
+				ret = true;
+				break;
 			}
 		}
 
-		// check indirect parents recursively
+		memo.put(method, ret);
+
+		return ret;
+	}
 
-		for (MethodInstance parent : parents) {
-			if (!parent.getParents().isEmpty() && hasParentMethod(name, desc, parent.getParents(), reqOrigin)) {
-				return true;
+	private static boolean suppliesMethod(ClassInstance cls, String name, String desc, URI reqOrigin) {
+		for (int i = 0; i < cls.getAsmNodes().length; i++) {
+			if (cls.getAsmNodeOrigin(i).equals(reqOrigin)) {
+				for (MethodNode m : cls.getAsmNodes()[i].methods) {
+					if (m.name.equals(name)
+							&& m.desc.equals(desc)) {
+						return true;
+					}
+				}
 			}
 		}
 
@@ -920,6 +527,32 @@ public class Mappings {
 		}
 	}
 
+	/**
+	 * Classes in export order and their export data for the targets sharing a set of namespace types.
+	 */
+	private static final class PlanGroup {
+		PlanGroup(List<NameType> nsTypes, List<ClassInstance> classes) {
+			this.nsTypes = nsTypes;
+			this.classes = new ArrayList<>(classes);
+		}
+
+		final List<NameType> nsTypes;
+		final List<ClassInstance> classes;
+		final Map<ClassInstance, ClassExportPlan> plans = new ConcurrentHashMap<>();
+		Map<Set<MethodInstance>, MethodInstance> hierarchyOwners;
+	}
+
+	private static final class TargetState {
+		TargetState(MappingsExportTarget target, PlanGroup group) {
+			this.target = target;
+			this.group = group;
+		}
+
+		final MappingsExportTarget target;
+		final PlanGroup group;
+		IOException error;
+	}
+
 	public static final String metaUidNextClass = "uid-next-class";
 	public static final String metaUidNextMethod = "uid-next-method";
 	public static final String metaUidNextField = "uid-next-field";
@@ -0,0 +1,42 @@
+package matcher.mapping;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.fabricmc.mappingio.format.MappingFormat;
+
+import matcher.NameType;
+
+/**
+ * Output file and namespaces for exporting mappings through {@link Mappings#save}.
+ *
+ * <p>The first namespace is the source namespace, missing or empty namespace names get a default derived from the
+ * namespace type.
+ */
+public final class MappingsExportTarget {
+	public MappingsExportTarget(Path file, MappingFormat format, List<NameType> nsTypes, List<String> nsNames) {
+		if (nsTypes.size() < 2 || nsTypes.size() > 2 && !format.hasNamespaces) throw new IllegalArgumentException("invalid namespace count");
+		if (nsNames != null && nsNames.size() != nsTypes.size()) throw new IllegalArgumentException("namespace types and names don't have the same number of entries");
+
+		List<String> names = new ArrayList<>(nsTypes.size());
+
+		for (int i = 0; i < nsTypes.size(); i++) {
+			String name = nsNames != null ? nsNames.get(i) : null;
+			if (name == null || name.isEmpty()) name = Mappings.getNamespaceName(nsTypes.get(i));
+
+			names.add(name);
+		}
+
+		this.file = file;
+		this.format = format;
+		this.nsTypes = Collections.unmodifiableList(new ArrayList<>(nsTypes));
+		this.nsNames = Collections.unmodifiableList(names);
+	}
+
+	public final Path file;
+	public final MappingFormat format;
+	public final List<NameType> nsTypes;
+	public final List<String> nsNames;
+}
@@ -0,0 +1,664 @@
+package matcher.serdes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleConsumer;
+import java.util.regex.Pattern;
+
+import matcher.Log;
+import matcher.MatchBatch;
+import matcher.Matcher;
+import matcher.type.ClassEnvironment;
+import matcher.type.ClassInstance;
+import matcher.type.FieldInstance;
+import matcher.type.InputFile;
+import matcher.type.InputFile.HashType;
+import matcher.type.LocalClassEnv;
+import matcher.type.MemberInstance;
+import matcher.type.MethodInstance;
+import matcher.type.MethodVarInstance;
+
+/**
+ * Compact binary matches format.
+ *
+ * <p>Layout: magic, version, input file lists, non-obfuscated patterns, a string table for all class/member ids and
+ * a length prefixed section per class. All integers are unsigned LEB128 varints, ids refer to string table indices.
+ * The sections are decoded and resolved in parallel, then applied in file order as a single bulk operation.
+ */
+final class BinaryMatchesIo {
+	static boolean isBinary(byte[] header) {
+		return header.length >= magic.length && Arrays.equals(header, 0, magic.length, magic, 0, magic.length);
+	}
+
+	static void read(byte[] data, List<Path> inputDirs, boolean verifyInputs, Matcher matcher, DoubleConsumer progressReceiver) throws IOException {
+		Input in = new Input(data);
+		in.pos = magic.length;
+
+		int version = in.readVarInt();
+		if (version != formatVersion) throw new IOException("unsupported binary matches version "+version);
+
+		List<List<InputFile>> inputFiles = new ArrayList<>(inputFileListCount);
+
+		for (int i = 0; i < inputFileListCount; i++) {
+			inputFiles.add(readInputFiles(in, verifyInputs));
+		}
+
+		String[] patterns = new String[4];
+
+		for (int i = 0; i < patterns.length; i++) {
+			String pattern = in.readNullableString();
+			patterns[i] = pattern != null ? pattern : "";
+		}
+
+		if (inputDirs != null) {
+			matcher.initFromMatches(inputDirs, inputFiles.get(0), inputFiles.get(1), inputFiles.get(2), inputFiles.get(3), inputFiles.get(4),
+					patterns[0], patterns[1], patterns[2], patterns[3],
+					progressReceiver);
+		}
+
+		String[] strings = new String[in.readCount(1)];
+
+		for (int i = 0; i < strings.length; i++) {
+			strings[i] = in.readString();
+		}
+
+		int sectionCount = in.readCount(1);
+		List<ClassEntry> entries = new ArrayList<>(sectionCount);
+
+		for (int i = 0; i < sectionCount; i++) {
+			int len = in.readVarInt();
+			if (len < 0 || len > data.length - in.pos) throw new IOException("invalid section length");
+
+			entries.add(new ClassEntry(in.pos, in.pos + len));
+			in.pos += len;
+		}
+
+		ClassEnvironment env = matcher.getEnv();
+
+		Matcher.runInParallel(entries, entry -> entry.decode(data, strings, env), progress -> { });
+
+		for (ClassEntry entry : entries) {
+			if (entry.error != null) throw entry.error;
+		}
+
+		MatchBatch batch = new MatchBatch(matcher);
+
+		for (ClassEntry entry : entries) {
+			entry.apply(batch);
+		}
+
+		batch.apply();
+	}
+
+	private static List<InputFile> readInputFiles(Input in, boolean verifyInputs) throws IOException {
+		int count = in.readCount(4);
+		List<InputFile> ret = new ArrayList<>(count);
+
+		for (int i = 0; i < count; i++) {
+			long size = in.readVarLong() - 1;
+			int hashTypeIdx = in.readVarInt();
+			if (hashTypeIdx < 0 || hashTypeIdx > HashType.values().length) throw new IOException("invalid hash type "+hashTypeIdx);
+			HashType hashType = hashTypeIdx > 0 ? HashType.values()[hashTypeIdx - 1] : null;
+			byte[] hash = in.readBytes(in.readVarInt());
+			String fileName = in.readString();
+
+			if (!verifyInputs) {
+				size = InputFile.unknownSize;
+				hash = null;
+			} else if (hash.length == 0) {
+				hash = null;
+			}
+
+			ret.add(new InputFile(fileName, size, hash, hashType));
+		}
+
+		return ret;
+	}
+
+	static void write(ClassEnvironment env, List<ClassInstance> classes, Path path) throws IOException {
+		Map<String, Integer> stringIds = new HashMap<>();
+		List<String> strings = new ArrayList<>();
+		List<byte[]> sections = new ArrayList<>(classes.size());
+		Output sectionOut = new Output(stringIds, strings);
+		LocalClassEnv envA = env.getEnvA();
+
+		for (ClassInstance cls : classes) {
+			assert !cls.isShared();
+
+			sectionOut.reset();
+			writeClass(cls, cls.getEnv() == envA ? 'a' : 'b', sectionOut);
+			sections.add(sectionOut.toByteArray());
+		}
+
+		Output out = new Output(stringIds, strings);
+		out.write(magic);
+		out.writeVarInt(formatVersion);
+
+		writeInputFiles(env.getInputFilesA(), out);
+		writeInputFiles(env.getInputFilesB(), out);
+		writeInputFiles(env.getClassPathFiles(), out);
+		writeInputFiles(env.getClassPathFilesA(), out);
+		writeInputFiles(env.getClassPathFilesB(), out);
+
+		writePattern(env.getNonObfuscatedClassPatternA(), out);
+		writePattern(env.getNonObfuscatedClassPatternB(), out);
+		writePattern(env.getNonObfuscatedMemberPatternA(), out);
+		writePattern(env.getNonObfuscatedMemberPatternB(), out);
+
+		out.writeVarInt(strings.size());
+
+		for (String str : strings) {
+			out.writeString(str);
+		}
+
+		out.writeVarInt(sections.size());
+
+		try (OutputStream os = Files.newOutputStream(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+			out.writeTo(os);
+
+			for (byte[] section : sections) {
+				out.reset();
+				out.writeVarInt(section.length);
+				out.writeTo(os);
+				os.write(section);
+			}
+		}
+	}
+
+	private static void writeInputFiles(Collection<InputFile> files, Output out) {
+		out.writeVarInt(files.size());
+
+		for (InputFile file : files) {
+			out.writeVarLong(file.size + 1);
+			out.writeVarInt(file.hashType != null ? file.hashType.ordinal() + 1 : 0);
+			byte[] hash = file.hash != null ? file.hash : new byte[0];
+			out.writeVarInt(hash.length);
+			out.write(hash);
+			out.writeString(file.path.getFileName().toString().replace('\n', ' '));
+		}
+	}
+
+	private static void writePattern(Pattern pattern, Output out) {
+		out.writeNullableString(pattern != null ? pattern.toString() : null);
+	}
+
+	private static void writeClass(ClassInstance cls, char side, Output out) {
+		if (cls.hasMatch()) {
+			out.write(SEC_MATCH);
+			out.writeId(cls.getId());
+			out.writeId(cls.getMatch().getId());
+
+			List<MemberInstance<?>> members = new ArrayList<>();
+
+			for (MethodInstance method : cls.getMethods()) {
+				if (method.hasMatch() || !method.isMatchable()) members.add(method);
+			}
+
+			for (FieldInstance field : cls.getFields()) {
+				if (field.hasMatch() || !field.isMatchable()) members.add(field);
+			}
+
+			for (MethodInstance method : cls.getMatch().getMethods()) {
+				if (!method.isMatchable()) members.add(method);
+			}
+
+			for (FieldInstance field : cls.getMatch().getFields()) {
+				if (!field.isMatchable()) members.add(field);
+			}
+
+			out.writeVarInt(members.size());
+
+			for (MemberInstance<?> member : members) {
+				writeMember(member, member.getCls() == cls ? 'a' : 'b', out);
+			}
+		} else {
+			assert !cls.isMatchable();
+
+			out.write(side == 'a' ? SEC_UNMATCHABLE_A : SEC_UNMATCHABLE_B);
+			out.writeId(cls.getId());
+		}
+	}
+
+	private static void writeMember(MemberInstance<?> member, char side, Output out) {
+		boolean isMethod = member instanceof MethodInstance;
+
+		if (!member.hasMatch()) {
+			assert !member.isMatchable();
+
+			if (isMethod) {
+				out.write(side == 'a' ? MEMBER_METHOD_UNMATCHABLE_A : MEMBER_METHOD_UNMATCHABLE_B);
+			} else {
+				out.write(side == 'a' ? MEMBER_FIELD_UNMATCHABLE_A : MEMBER_FIELD_UNMATCHABLE_B);
+			}
+
+			out.writeId(member.getId());
+			return;
+		}
+
+		out.write(isMethod ? MEMBER_METHOD : MEMBER_FIELD);
+		out.writeId(member.getId());
+		out.writeId(member.getMatch().getId());
+
+		if (!isMethod) return;
+
+		MethodInstance method = (MethodInstance) member;
+		List<MethodVarInstance> vars = new ArrayList<>();
+
+		for (MethodVarInstance arg : method.getArgs()) {
+			if (arg.hasMatch() || !arg.isMatchable()) vars.add(arg);
+		}
+
+		for (MethodVarInstance var : method.getVars()) {
+			if (var.hasMatch() || !var.isMatchable()) vars.add(var);
+		}
+
+		for (MethodVarInstance arg : method.getMatch().getArgs()) {
+			if (!arg.isMatchable()) vars.add(arg);
+		}
+
+		for (MethodVarInstance var : method.getMatch().getVars()) {
+			if (!var.isMatchable()) vars.add(var);
+		}
+
+		out.writeVarInt(vars.size());
+
+		for (MethodVarInstance var : vars) {
+			boolean sideA = var.getMethod() == method;
+
+			if (var.hasMatch()) {
+				out.write(var.isArg() ? VAR_ARG : VAR_VAR);
+				out.writeVarInt(var.getIndex());
+				out.writeVarInt(var.getMatch().getIndex());
+			} else {
+				assert !var.isMatchable();
+
+				if (var.isArg()) {
+					out.write(sideA ? VAR_ARG_UNMATCHABLE_A : VAR_ARG_UNMATCHABLE_B);
+				} else {
+					out.write(sideA ? VAR_VAR_UNMATCHABLE_A : VAR_VAR_UNMATCHABLE_B);
+				}
+
+				out.writeVarInt(var.getIndex());
+			}
+		}
+	}
+
+	private static final class ClassEntry {
+		ClassEntry(int start, int end) {
+			this.start = start;
+			this.end = end;
+		}
+
+		void decode(byte[] data, String[] strings, ClassEnvironment env) {
+			try {
+				Input in = new Input(data);
+				in.pos = start;
+				in.limit = end;
+
+				type = in.readByte();
+
+				switch (type) {
+				case SEC_MATCH:
+					idA = in.readId(strings);
+					idB = in.readId(strings);
+					a = env.getLocalClsByIdA(idA);
+					b = env.getLocalClsByIdB(idB);
+
+					int count = in.readCount(2); // unmatchable members only have a type and an id
+					members = new ArrayList<>(count);
+
+					for (int i = 0; i < count; i++) {
+						members.add(MemberEntry.decode(in, strings, a, b));
+					}
+
+					break;
+				case SEC_UNMATCHABLE_A:
+				case SEC_UNMATCHABLE_B:
+					idA = in.readId(strings);
+					a = type == SEC_UNMATCHABLE_A ? env.getLocalClsByIdA(idA) : env.getLocalClsByIdB(idA);
+					break;
+				default:
+					throw new IOException("invalid section type "+type);
+				}
+
+				if (in.pos != end) throw new IOException("trailing section data");
+			} catch (IOException e) {
+				error = e;
+			}
+		}
+
+		void apply(MatchBatch batch) {
+			if (type != SEC_MATCH) { // class unmatchable
+				if (a == null) {
+					Log.warn("Unknown %s class %s", type == SEC_UNMATCHABLE_A ? 'a' : 'b', idA);
+				} else {
+					batch.setUnmatchable(a);
+				}
+
+				return;
+			}
+
+			if (a == null) {
+				Log.warn("Unknown a class %s", idA);
+				return;
+			} else if (b == null) {
+				Log.warn("Unknown b class %s", idB);
+				return;
+			} else if (!a.isMatchable() || !b.isMatchable()) {
+				Log.warn("Unmatchable a/b class %s/%s", idA, idB);
+				return;
+			}
+
+			batch.match(a, b);
+
+			for (MemberEntry member : members) {
+				member.apply(batch, a, b);
+			}
+		}
+
+		final int start;
+		final int end;
+		int type;
+		String idA;
+		String idB;
+		ClassInstance a;
+		ClassInstance b;
+		List<MemberEntry> members;
+		IOException error;
+	}
+
+	private static final class MemberEntry {
+		static MemberEntry decode(Input in, String[] strings, ClassInstance clsA, ClassInstance clsB) throws IOException {
+			MemberEntry ret = new MemberEntry();
+			ret.type = in.readByte();
+
+			switch (ret.type) {
+			case MEMBER_METHOD:
+			case MEMBER_FIELD:
+				ret.idA = in.readId(strings);
+				ret.idB = in.readId(strings);
+
+				if (ret.type == MEMBER_METHOD) {
+					if (clsA != null) ret.a = clsA.getMethod(ret.idA);
+					if (clsB != null) ret.b = clsB.getMethod(ret.idB);
+
+					int count = in.readCount(2);
+					ret.vars = new int[count * 3];
+
+					for (int i = 0; i < count; i++) {
+						int varType = in.readByte();
+						if (varType > VAR_VAR_UNMATCHABLE_B) throw new IOException("invalid var type "+varType);
+
+						ret.vars[i * 3] = varType;
+						ret.vars[i * 3 + 1] = in.readVarInt();
+						ret.vars[i * 3 + 2] = varType == VAR_ARG || varType == VAR_VAR ? in.readVarInt() : -1;
+					}
+				} else {
+					if (clsA != null) ret.a = clsA.getField(ret.idA);
+					if (clsB != null) ret.b = clsB.getField(ret.idB);
+				}
+
+				break;
+			case MEMBER_METHOD_UNMATCHABLE_A:
+			case MEMBER_METHOD_UNMATCHABLE_B:
+			case MEMBER_FIELD_UNMATCHABLE_A:
+			case MEMBER_FIELD_UNMATCHABLE_B: {
+				ret.idA = in.readId(strings);
+				boolean sideA = ret.type == MEMBER_METHOD_UNMATCHABLE_A || ret.type == MEMBER_FIELD_UNMATCHABLE_A;
+				ClassInstance cls = sideA ? clsA : clsB;
+
+				if (cls != null) {
+					ret.a = ret.type <= MEMBER_METHOD_UNMATCHABLE_B ? cls.getMethod(ret.idA) : cls.getField(ret.idA);
+				}
+
+				break;
+			}
+			default:
+				throw new IOException("invalid member type "+ret.type);
+			}
+
+			return ret;
+		}
+
+		void apply(MatchBatch batch, ClassInstance clsA, ClassInstance clsB) {
+			switch (type) {
+			case MEMBER_METHOD:
+			case MEMBER_FIELD: {
+				String kind = type == MEMBER_METHOD ? "method" : "field";
+
+				if (a == null) {
+					Log.warn("Unknown a %s %s in class %s", kind, idA, clsA);
+				} else if (b == null) {
+					Log.warn("Unknown b %s %s in class %s", kind, idB, clsB);
+				} else if (!a.isMatchable() || !b.isMatchable()) {
+					Log.warn("Unmatchable a/b %s %s/%s", kind, idA, idB);
+				} else if (type == MEMBER_METHOD) {
+					MethodInstance methodA = (MethodInstance) a;
+					MethodInstance methodB = (MethodInstance) b;
+					batch.match(methodA, methodB);
+					applyVars(batch, methodA, methodB);
+				} else {
+					batch.match((FieldInstance) a, (FieldInstance) b);
+				}
+
+				break;
+			}
+			default: { // unmatchable
+				if (a == null) {
+					Log.warn("Unknown member %s in class %s", idA, type == MEMBER_METHOD_UNMATCHABLE_A || type == MEMBER_FIELD_UNMATCHABLE_A ? clsA : clsB);
+				} else {
+					batch.setUnmatchable(a);
+				}
+			}
+			}
+		}
+
+		private void applyVars(MatchBatch batch, MethodInstance methodA, MethodInstance methodB) {
+			for (int i = 0; i < vars.length; i += 3) {
+				int varType = vars[i];
+				boolean isArg = varType == VAR_ARG || varType == VAR_ARG_UNMATCHABLE_A || varType == VAR_ARG_UNMATCHABLE_B;
+				String kind = isArg ? "arg" : "var";
+				int idxA = vars[i + 1];
+				int idxB = vars[i + 2];
+
+				if (varType == VAR_ARG || varType == VAR_VAR) {
+					MethodVarInstance[] varsA = isArg ? methodA.getArgs() : methodA.getVars();
+					MethodVarInstance[] varsB = isArg ? methodB.getArgs() : methodB.getVars();
+
+					if (idxA >= varsA.length) {
+						Log.warn("Unknown a method %s %d in method %s", kind, idxA, methodA);
+					} else if (idxB >= varsB.length) {
+						Log.warn("Unknown b method %s %d in method %s", kind, idxB, methodB);
+					} else if (!varsA[idxA].isMatchable() || !varsB[idxB].isMatchable()) {
+						Log.warn("Unmatchable a/b method %s %d/%d in method %s/%s", kind, idxA, idxB, methodA, methodB);
+						return;
+					} else {
+						batch.match(varsA[idxA], varsB[idxB]);
+					}
+				} else {
+					MethodInstance method = varType == VAR_ARG_UNMATCHABLE_A || varType == VAR_VAR_UNMATCHABLE_A ? methodA : methodB;
+					MethodVarInstance[] methodVars = isArg ? method.getArgs() : method.getVars();
+
+					if (idxA >= methodVars.length) {
+						Log.warn("Unknown method %s %d in method %s", kind, idxA, method);
+					} else {
+						batch.setUnmatchable(methodVars[idxA]);
+					}
+				}
+			}
+		}
+
+		int type;
+		String idA;
+		String idB;
+		MemberInstance<?> a;
+		MemberInstance<?> b;
+		int[] vars; // type, idxA, idxB triples
+	}
+
+	private static final class Input {
+		Input(byte[] data) {
+			this.data = data;
+			this.limit = data.length;
+		}
+
+		int readByte() throws IOException {
+			if (pos >= limit) throw new IOException("unexpected end of data");
+
+			return data[pos++] & 0xff;
+		}
+
+		int readVarInt() throws IOException {
+			long ret = readVarLong();
+			if (ret < 0 || ret > Integer.MAX_VALUE) throw new IOException("varint overflow");
+
+			return (int) ret;
+		}
+
+		/**
+		 * Read an element count, rejecting counts that can't fit in the remaining data.
+		 */
+		int readCount(int minElementSize) throws IOException {
+			int ret = readVarInt();
+			if (ret > (limit - pos) / minElementSize) throw new IOException("invalid element count "+ret);
+
+			return ret;
+		}
+
+		long readVarLong() throws IOException {
+			long ret = 0;
+
+			for (int shift = 0; shift < 64; shift += 7) {
+				int b = readByte();
+				ret |= (long) (b & 0x7f) << shift;
+				if ((b & 0x80) == 0) return ret;
+			}
+
+			throw new IOException("varint overflow");
+		}
+
+		byte[] readBytes(int len) throws IOException {
+			if (len < 0 || len > limit - pos) throw new IOException("unexpected end of data");
+
+			byte[] ret = Arrays.copyOfRange(data, pos, pos + len);
+			pos += len;
+
+			return ret;
+		}
+
+		String readString() throws IOException {
+			int len = readVarInt();
+			if (len > limit - pos) throw new IOException("unexpected end of data");
+
+			String ret = new String(data, pos, len, StandardCharsets.UTF_8);
+			pos += len;
+
+			return ret;
+		}
+
+		String readNullableString() throws IOException {
+			if (readByte() == 0) return null;
+
+			return readString();
+		}
+
+		String readId(String[] strings) throws IOException {
+			int idx = readVarInt();
+			if (idx >= strings.length) throw new IOException("invalid string index "+idx);
+
+			return strings[idx];
+		}
+
+		final byte[] data;
+		int pos;
+		int limit;
+	}
+
+	private static final class Output extends ByteArrayOutputStream {
+		Output(Map<String, Integer> stringIds, List<String> strings) {
+			this.stringIds = stringIds;
+			this.strings = strings;
+		}
+
+		@Override
+		public void write(byte[] b) {
+			write(b, 0, b.length);
+		}
+
+		void writeVarInt(int value) {
+			writeVarLong(value & 0xffffffffL);
+		}
+
+		void writeVarLong(long value) {
+			while ((value & ~0x7fL) != 0) {
+				write((int) (value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+
+			write((int) value);
+		}
+
+		void writeString(String str) {
+			byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+			writeVarInt(bytes.length);
+			write(bytes);
+		}
+
+		void writeNullableString(String str) {
+			if (str == null) {
+				write(0);
+			} else {
+				write(1);
+				writeString(str);
+			}
+		}
+
+		void writeId(String id) {
+			Integer idx = stringIds.get(id);
+
+			if (idx == null) {
+				idx = strings.size();
+				stringIds.put(id, idx);
+				strings.add(id);
+			}
+
+			writeVarInt(idx);
+		}
+
+		private final Map<String, Integer> stringIds;
+		private final List<String> strings;
+	}
+
+	static final byte[] magic = "MATCHBIN".getBytes(StandardCharsets.US_ASCII);
+	private static final int formatVersion = 1;
+	private static final int inputFileListCount = 5; // a, b, cp, cp a, cp b
+
+	private static final int SEC_MATCH = 0;
+	private static final int SEC_UNMATCHABLE_A = 1;
+	private static final int SEC_UNMATCHABLE_B = 2;
+
+	private static final int MEMBER_METHOD = 0;
+	private static final int MEMBER_FIELD = 1;
+	private static final int MEMBER_METHOD_UNMATCHABLE_A = 2;
+	private static final int MEMBER_METHOD_UNMATCHABLE_B = 3;
+	private static final int MEMBER_FIELD_UNMATCHABLE_A = 4;
+	private static final int MEMBER_FIELD_UNMATCHABLE_B = 5;
+
+	private static final int VAR_ARG = 0;
+	private static final int VAR_VAR = 1;
+	private static final int VAR_ARG_UNMATCHABLE_A = 2;
+	private static final int VAR_ARG_UNMATCHABLE_B = 3;
+	private static final int VAR_VAR_UNMATCHABLE_A = 4;
+	private static final int VAR_VAR_UNMATCHABLE_B = 5;
+}
@@ -2,6 +2,7 @@ package matcher.serdes;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.nio.file.Files;
@@ -13,8 +14,10 @@ import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
 import java.util.function.DoubleConsumer;
 
+import matcher.MatchBatch;
 import matcher.Matcher;
 import matcher.type.ClassEnvironment;
 import matcher.type.ClassInstance;
@@ -28,6 +31,35 @@ import matcher.type.MethodVarInstance;
 
 public class MatchesIo {
 	public static void read(Path path, List<Path> inputDirs, boolean verifyInputs, Matcher matcher, DoubleConsumer progressReceiver) {
+		matcher.beginBulk();
+
+		try {
+			if (isBinaryFile(path)) {
+				BinaryMatchesIo.read(Files.readAllBytes(path), inputDirs, verifyInputs, matcher, progressReceiver);
+			} else {
+				readText(path, inputDirs, verifyInputs, matcher, progressReceiver);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			matcher.endBulk();
+		}
+	}
+
+	private static boolean isBinaryFile(Path path) throws IOException {
+		try (InputStream is = Files.newInputStream(path)) {
+			return BinaryMatchesIo.isBinary(is.readNBytes(BinaryMatchesIo.magic.length));
+		}
+	}
+
+	/**
+	 * Whether the matches file at path should be written in the binary format, based on its extension.
+	 */
+	public static boolean isBinaryPath(Path path) {
+		return path.getFileName().toString().toLowerCase(Locale.ENGLISH).endsWith(binaryExtension);
+	}
+
+	private static void readText(Path path, List<Path> inputDirs, boolean verifyInputs, Matcher matcher, DoubleConsumer progressReceiver) throws IOException {
 		ClassEnvironment env = matcher.getEnv();
 
 		try (BufferedReader reader = Files.newBufferedReader(path)) {
@@ -41,8 +73,11 @@ public class MatchesIo {
 			String nonObfuscatedClassPatternB = "";
 			String nonObfuscatedMemberPatternA = "";
 			String nonObfuscatedMemberPatternB = "";
+			MatchBatch batch = new MatchBatch(matcher);
 			ClassInstance currentClass = null;
+			ClassInstance currentClassB = null;
 			MethodInstance currentMethod = null;
+			MethodInstance currentMethodB = null;
 			String line;
 
 			while ((line = reader.readLine()) != null) {
@@ -163,7 +198,9 @@ public class MatchesIo {
 						String idA = line.substring(2, pos);
 						String idB = line.substring(pos + 1);
 						currentClass = env.getLocalClsByIdA(idA);
+						currentClassB = null;
 						currentMethod = null;
+						currentMethodB = null;
 						ClassInstance target;
 
 						if (currentClass == null) {
@@ -175,9 +212,8 @@ public class MatchesIo {
 							System.err.println("Unmatchable a/b class "+idA+"/"+idB);
 							currentClass = null;
 						} else {
-							currentClass.setMatchable(true);
-							target.setMatchable(true);
-							matcher.match(currentClass, target);
+							currentClassB = target;
+							batch.match(currentClass, target);
 						}
 					} else if (line.startsWith("cu\t")) { // class unmatchable
 						char side;
@@ -185,17 +221,16 @@ public class MatchesIo {
 
 						String id = line.substring(5);
 						ClassInstance cls = side == 'a' ? env.getLocalClsByIdA(id) : env.getLocalClsByIdB(id);
-						currentClass = null;
-						currentMethod = null;
+						currentClass = currentClassB = null;
+						currentMethod = currentMethodB = null;
 
 						if (cls == null) {
 							System.err.println("Unknown "+side+" class "+id);
 						} else {
-							if (cls.hasMatch()) matcher.unmatch(cls);
-							cls.setMatchable(false);
+							batch.setUnmatchable(cls);
 						}
 					} else if (line.startsWith("\tm\t") || line.startsWith("\tf\t")) { // method or field
-						currentMethod = null;
+						currentMethod = currentMethodB = null;
 						if (currentClass == null) continue;
 
 						int pos = line.indexOf('\t', 3);
@@ -209,15 +244,14 @@ public class MatchesIo {
 
 							if (a == null) {
 								System.err.println("Unknown a method "+idA+" in class "+currentClass);
-							} else if ((b = currentClass.getMatch().getMethod(idB)) == null) {
-								System.err.println("Unknown b method "+idB+" in class "+currentClass.getMatch());
+							} else if ((b = currentClassB.getMethod(idB)) == null) {
+								System.err.println("Unknown b method "+idB+" in class "+currentClassB);
 							} else if (!a.isMatchable() || !b.isMatchable()) {
 								System.err.println("Unmatchable a/b method "+idA+"/"+idB);
 								currentMethod = null;
 							} else {
-								a.setMatchable(true);
-								b.setMatchable(true);
-								matcher.match(a, b);
+								currentMethodB = b;
+								batch.match(a, b);
 							}
 						} else { // field
 							FieldInstance a = currentClass.getField(idA);
@@ -225,46 +259,40 @@ public class MatchesIo {
 
 							if (a == null) {
 								System.err.println("Unknown a field "+idA+" in class "+currentClass);
-							} else if ((b = currentClass.getMatch().getField(idB)) == null) {
-								System.err.println("Unknown b field "+idB+" in class "+currentClass.getMatch());
+							} else if ((b = currentClassB.getField(idB)) == null) {
+								System.err.println("Unknown b field "+idB+" in class "+currentClassB);
 							} else if (!a.isMatchable() || !b.isMatchable()) {
 								System.err.println("Unmatchable a/b field "+idA+"/"+idB);
 							} else {
-								a.setMatchable(true);
-								b.setMatchable(true);
-								matcher.match(a, b);
+								batch.match(a, b);
 							}
 						}
 					} else if (line.startsWith("\tmu\t") || line.startsWith("\tfu\t")) { // method or field unmatchable
-						currentMethod = null;
+						currentMethod = currentMethodB = null;
 						if (currentClass == null) continue;
 
 						char side;
 						if (line.length() < 7 || (side = line.charAt(4)) != 'a' && side != 'b' || line.charAt(5) != '\t') throw new IOException("invalid matches file");
 
 						String id = line.substring(6);
-						ClassInstance cls = side == 'a' ? currentClass : currentClass.getMatch();
+						ClassInstance cls = side == 'a' ? currentClass : currentClassB;
 						assert cls != null; // currentClass must have been matched before, so shouldn't be null
 						MemberInstance<?> member = line.charAt(1) == 'm' ? cls.getMethod(id) : cls.getField(id);
 
 						if (member == null) {
 							System.err.println("Unknown member "+id+" in class "+cls);
 						} else {
-							if (member.hasMatch()) matcher.unmatch(member);
-
-							if (!member.setMatchable(false)) {
-								System.err.printf("can't mark %s as unmatchable, already matched?%n", member);
-							}
+							batch.setUnmatchable(member);
 						}
 					} else if (line.startsWith("\t\tma\t") || line.startsWith("\t\tmv\t")) { // method arg or method var
-						if (currentMethod == null || !currentMethod.hasMatch()) continue;
+						if (currentMethod == null || currentMethodB == null) continue;
 
 						int pos = line.indexOf('\t', 5);
 						if (pos == -1 || pos == 5 || pos + 1 == line.length()) throw new IOException("invalid matches file");
 
 						int idxA = Integer.parseInt(line.substring(5, pos));
 						int idxB = Integer.parseInt(line.substring(pos + 1));
-						MethodInstance matchedMethod = currentMethod.getMatch();
+						MethodInstance matchedMethod = currentMethodB;
 
 						MethodVarInstance[] varsA, varsB;
 						String type;
@@ -287,9 +315,7 @@ public class MatchesIo {
 							System.err.println("Unmatchable a/b method "+type+" "+idxA+"/"+idxB+" in method "+currentMethod+"/"+matchedMethod);
 							currentMethod = null;
 						} else {
-							varsA[idxA].setMatchable(true);
-							varsB[idxB].setMatchable(true);
-							matcher.match(varsA[idxA], varsB[idxB]);
+							batch.match(varsA[idxA], varsB[idxB]);
 						}
 					} else if (line.startsWith("\t\tmau\t") || line.startsWith("\t\tmvu\t")) { // method arg or method var unmatchable
 						if (currentMethod == null) continue;
@@ -297,7 +323,7 @@ public class MatchesIo {
 						char side;
 						if (line.length() < 9 || (side = line.charAt(6)) != 'a' && side != 'b' || line.charAt(7) != '\t') throw new IOException("invalid matches file");
 
-						MethodInstance method = side == 'a' ? currentMethod : currentMethod.getMatch();
+						MethodInstance method = side == 'a' ? currentMethod : currentMethodB;
 						if (method == null) continue;
 
 						int idx = Integer.parseInt(line.substring(8));
@@ -317,19 +343,15 @@ public class MatchesIo {
 							System.err.println("Unknown a method "+type+" "+idx+" in method "+method);
 							continue;
 						} else {
-							MethodVarInstance var = vars[idx];
-
-							if (var.hasMatch()) matcher.unmatch(var);
-
-							var.setMatchable(false);
+							batch.setUnmatchable(vars[idx]);
 						}
 					}
 				}
 			}
 
 			if (state != ParserState.CONTENT) throw new IOException("invalid matches file");
-		} catch (IOException e) {
-			throw new UncheckedIOException(e);
+
+			batch.apply();
 		}
 	}
 
@@ -362,6 +384,11 @@ public class MatchesIo {
 			}
 		});
 
+		if (isBinaryPath(path)) {
+			BinaryMatchesIo.write(env, classes, path);
+			return true;
+		}
+
 		try (Writer writer = Files.newBufferedWriter(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
 			writer.write("Matches saved ");
 			writer.write(DateTimeFormatter.ISO_INSTANT.format(Instant.now()));
@@ -543,4 +570,7 @@ public class MatchesIo {
 	private enum ParserState {
 		START, HEADER, FILES_A, FILES_B, CP_FILES, CP_FILES_A, CP_FILES_B, CONTENT;
 	}
+
+	public static final String textExtension = ".match";
+	public static final String binaryExtension = ".bmatch";
 }
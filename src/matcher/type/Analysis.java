@@ -1,6 +1,5 @@
 package matcher.type;
 
-import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayDeque;
@@ -48,6 +47,7 @@ import org.objectweb.asm.util.Printer;
 import org.objectweb.asm.util.Textifier;
 import org.objectweb.asm.util.TraceMethodVisitor;
 
+import matcher.Log;
 import matcher.NameType;
 import matcher.Util;
 
@@ -56,8 +56,12 @@ class Analysis {
 		MethodNode asmNode = method.getAsmNode();
 		if (asmNode == null || (asmNode.access & Opcodes.ACC_ABSTRACT) != 0 || asmNode.instructions.size() == 0) return;
 
-		System.out.println(method.getDisplayName(NameType.MAPPED_PLAIN, true));
-		dump(asmNode);
+		boolean trace = Log.isEnabled(Log.Level.TRACE);
+
+		if (trace) {
+			Log.trace("%s", method.getDisplayName(NameType.MAPPED_PLAIN, true));
+			dump(asmNode);
+		}
 
 		StateRecorder rec = new StateRecorder(method, common);
 		InsnList il = asmNode.instructions;
@@ -727,14 +731,14 @@ class Analysis {
 			}
 		}
 
-		rec.dump(il, System.out);
+		if (trace) rec.dump(il);
 
 		BitSet entryPoints = getEntryPoints(asmNode, exitPoints);
 		applyTryCatchExits(asmNode, entryPoints, exitPoints);
 		addDirectExits(il, entryPoints, exitPoints);
 		purgeLocals(il, rec, entryPoints, exitPoints);
 
-		rec.dump(il, System.out);
+		if (trace) rec.dump(il);
 
 		createLocalVariables(il, rec, entryPoints, exitPoints, asmNode.localVariables);
 	}
@@ -772,8 +776,8 @@ class Analysis {
 			for (int idx = il.indexOf(n.start), max = il.indexOf(n.end); idx < max; idx++) {
 				ExecState state = rec.getState(idx);
 
-				if (state != null) {
-					states.add(new ExecState(Arrays.copyOf(state.locals, state.locals.length), Arrays.copyOf(state.localVarIds, state.locals.length), stack, stackVarIds));
+				if (state != null) { // states are immutable, share the locals arrays
+					states.add(new ExecState(state.locals, state.localVarIds, stack, stackVarIds));
 				}
 			}
 
@@ -816,6 +820,7 @@ class Analysis {
 
 		@Override
 		public boolean equals(Object obj) {
+			if (obj == this) return true;
 			if (!(obj instanceof QueueElement)) return false;
 
 			QueueElement o = (QueueElement) obj;
@@ -825,7 +830,7 @@ class Analysis {
 
 		@Override
 		public int hashCode() {
-			return dstIndex ^ srcState.hashCode();
+			return dstIndex * 31 + srcState.hashCode();
 		}
 
 		final int dstIndex;
@@ -1134,13 +1139,15 @@ class Analysis {
 
 		lvToVar = null;
 
-		System.out.println("Local vars raw:");
+		if (Log.isEnabled(Log.Level.TRACE)) {
+			Log.trace("Local vars raw:");
 
-		for (int i = 0; i < varCount; i++) {
-			ExecState state = rec.getState(startIndices[i]);
+			for (int i = 0; i < varCount; i++) {
+				ExecState state = rec.getState(startIndices[i]);
 
-			System.out.printf("  %d: LV %d @ %d - %d: %s\t\t(%s)%n",
-					i, varToLv[i], startIndices[i], endIndices[i], state.locals[varToLv[i]].toString(), rec.varSources[state.localVarIds[varToLv[i]] - 1].name());
+				Log.trace("  %d: LV %d @ %d - %d: %s\t\t(%s)",
+						i, varToLv[i], startIndices[i], endIndices[i], state.locals[varToLv[i]].toString(), rec.varSources[state.localVarIds[varToLv[i]] - 1].name());
+			}
 		}
 
 		// merge variables if they are adjacent and reachable without interruption, TODO: this currently only merges blocks that are reachable by the preceding block, the other way is also possible
@@ -1245,16 +1252,18 @@ class Analysis {
 			}
 		}
 
-		System.out.println("Local vars:");
+		if (Log.isEnabled(Log.Level.TRACE)) {
+			Log.trace("Local vars:");
 
-		for (int i = 0; i < varCount; i++) {
-			ExecState state = rec.getState(startIndices[i]);
+			for (int i = 0; i < varCount; i++) {
+				ExecState state = rec.getState(startIndices[i]);
 
-			System.out.printf("  %d: LV %d @ %d - %d: %s\t\t(%s)%n",
-					i, varToLv[i], startIndices[i], endIndices[i], state.locals[varToLv[i]].toString(), rec.varSources[state.localVarIds[varToLv[i]] - 1].name());
+				Log.trace("  %d: LV %d @ %d - %d: %s\t\t(%s)",
+						i, varToLv[i], startIndices[i], endIndices[i], state.locals[varToLv[i]].toString(), rec.varSources[state.localVarIds[varToLv[i]] - 1].name());
+			}
 		}
 
-		if (orig != null) {
+		if (orig != null && Log.isEnabled(Log.Level.TRACE)) {
 			boolean mismatch = orig.size() != varCount;
 
 			if (!mismatch) {
@@ -1272,14 +1281,14 @@ class Analysis {
 			}
 
 			if (!mismatch) {
-				System.out.println("Existing vars matched!");
+				Log.trace("Existing vars matched!");
 			} else {
-				System.out.println("Existing vars mismatch:");
+				Log.trace("Existing vars mismatch:");
 
 				for (int i = 0; i < orig.size(); i++) {
 					LocalVariableNode lvn = orig.get(i);
 
-					System.out.printf("  %d: LV %d @ %d - %d: %s%n", i, lvn.index, il.indexOf(lvn.start), il.indexOf(lvn.end) - 1, lvn.desc);
+					Log.trace("  %d: LV %d @ %d - %d: %s", i, lvn.index, il.indexOf(lvn.start), il.indexOf(lvn.end) - 1, lvn.desc);
 				}
 			}
 		}
@@ -1487,6 +1496,7 @@ class Analysis {
 			localsSize = srcState.locals.length;
 			stackSize = srcState.stack.length;
 			this.idx = dstIdx;
+			lastState = srcState;
 
 			return updateState();
 		}
@@ -1509,7 +1519,7 @@ class Analysis {
 
 					states[idx] = newState;
 				} else {
-					states[idx] = new ExecState(locals, localVarIds, localsSize, stack, stackVarIds, stackSize);
+					states[idx] = createState();
 				}
 
 				return true;
@@ -1531,7 +1541,56 @@ class Analysis {
 		}
 
 		public ExecState getState() {
-			return new ExecState(locals, localVarIds, localsSize, stack, stackVarIds, stackSize);
+			return createState();
+		}
+
+		/**
+		 * Snapshot the current frame, sharing the locals/stack arrays of the previous snapshot where unchanged.
+		 *
+		 * <p>Most instructions only touch the stack or neither part, so consecutive states can reuse the
+		 * previous arrays instead of copying the full frame for every instruction.
+		 */
+		private ExecState createState() {
+			ExecState ref = lastState;
+			ExecState ret;
+
+			if (ref == null) {
+				ret = new ExecState(locals, localVarIds, localsSize, stack, stackVarIds, stackSize);
+			} else {
+				boolean sameLocals = isSame(ref.locals, ref.localVarIds, locals, localVarIds, localsSize);
+				boolean sameStack = isSame(ref.stack, ref.stackVarIds, stack, stackVarIds, stackSize);
+
+				if (sameLocals && sameStack) {
+					return ref;
+				}
+
+				ret = new ExecState(sameLocals ? ref.locals : copy(locals, localsSize),
+						sameLocals ? ref.localVarIds : copy(localVarIds, localsSize),
+						sameStack ? ref.stack : copy(stack, stackSize),
+						sameStack ? ref.stackVarIds : copy(stackVarIds, stackSize));
+			}
+
+			lastState = ret;
+
+			return ret;
+		}
+
+		private static boolean isSame(ClassInstance[] typesA, int[] idsA, ClassInstance[] typesB, int[] idsB, int size) {
+			if (typesA.length != size) return false;
+
+			for (int i = 0; i < size; i++) {
+				if (typesA[i] != typesB[i] || idsA[i] != idsB[i]) return false;
+			}
+
+			return true;
+		}
+
+		private static ClassInstance[] copy(ClassInstance[] types, int size) {
+			return size != 0 ? Arrays.copyOf(types, size) : ExecState.empty;
+		}
+
+		private static int[] copy(int[] ids, int size) {
+			return size != 0 ? Arrays.copyOf(ids, size) : ExecState.emptyIds;
 		}
 
 		public ExecState getState(int idx) {
@@ -1707,7 +1766,17 @@ class Analysis {
 			return ++nextVarId;
 		}
 
-		public void dump(InsnList il, PrintStream ps) {
+		public void dump(InsnList il) {
+			StringWriter writer = new StringWriter();
+
+			try (PrintWriter pw = new PrintWriter(writer)) {
+				dump(il, pw);
+			}
+
+			Log.trace("%s", writer);
+		}
+
+		private void dump(InsnList il, PrintWriter ps) {
 			for (int i = 0; i < states.length; i++) {
 				ExecState state = states[i];
 
@@ -1849,7 +1918,7 @@ class Analysis {
 			}
 		}
 
-		private void dumpVars(ClassInstance[] types, int[] ids, PrintStream ps) {
+		private void dumpVars(ClassInstance[] types, int[] ids, PrintWriter ps) {
 			ps.print('[');
 
 			for (int i = 0; i < types.length; i++) {
@@ -1892,6 +1961,7 @@ class Analysis {
 		int stackSize;
 		int idx;
 		final CommonClasses common;
+		private ExecState lastState; // most recent snapshot, used for sharing unchanged arrays
 		private int nextVarId;
 		VarSource[] varSources = new VarSource[10];
 		int[] varIdMap = new int[10];
@@ -1933,17 +2003,27 @@ class Analysis {
 
 		@Override
 		public boolean equals(Object obj) {
+			if (obj == this) return true;
 			if (!(obj instanceof ExecState)) return false;
 
 			ExecState o = (ExecState) obj;
 
-			return Arrays.equals(locals, o.locals)
-					&& Arrays.equals(stack, o.stack);
+			return hashCode() == o.hashCode()
+					&& (locals == o.locals || Arrays.equals(locals, o.locals))
+					&& (stack == o.stack || Arrays.equals(stack, o.stack));
 		}
 
 		@Override
 		public int hashCode() {
-			return Arrays.hashCode(locals) ^ Arrays.hashCode(stack);
+			int ret = hash;
+
+			if (ret == 0) { // the state is immutable, compute the hash only once
+				ret = Arrays.hashCode(locals) ^ Arrays.hashCode(stack);
+				if (ret == 0) ret = 1;
+				hash = ret;
+			}
+
+			return ret;
 		}
 
 		private static final ClassInstance[] empty = new ClassInstance[0];
@@ -1953,6 +2033,7 @@ class Analysis {
 		final int[] localVarIds;
 		final ClassInstance[] stack;
 		final int[] stackVarIds;
+		private int hash;
 	}
 
 	static void checkInitializer(FieldInstance field, ClassFeatureExtractor context) {
@@ -1983,7 +2064,7 @@ class Analysis {
 		}
 
 		if (fieldWrite == null) {
-			dump(asmNode);
+			if (Log.isEnabled(Log.Level.DEBUG)) dump(Log.Level.DEBUG, asmNode);
 			throw new IllegalStateException("can't find field write insn for "+field+" in "+method);
 		}
 
@@ -2367,6 +2448,10 @@ class Analysis {
 	}
 
 	private static void dump(MethodNode method) {
+		dump(Log.Level.TRACE, method);
+	}
+
+	private static void dump(Log.Level level, MethodNode method) {
 		Textifier textifier = new Textifier();
 		method.accept(new TraceMethodVisitor(textifier));
 
@@ -2376,7 +2461,7 @@ class Analysis {
 			textifier.print(pw);
 		}
 
-		System.out.println(writer.toString());
+		Log.log(level, "%s", writer);
 	}
 
 	private static void dump(Iterable<AbstractInsnNode> il) {
@@ -2394,6 +2479,6 @@ class Analysis {
 			textifier.print(pw);
 		}
 
-		System.out.println(writer.toString());
+		Log.trace("%s", writer);
 	}
 }
@@ -54,6 +54,14 @@ public final class ClassEnvironment implements ClassEnv {
 		nonObfuscatedMemberPatternB = config.getNonObfuscatedMemberPatternB().isEmpty() ? null : Pattern.compile(config.getNonObfuscatedMemberPatternB());
 
 		try {
+			// hash all inputs up front in parallel, the InputFile instances created while reading will use the cached results
+			List<Path> allPaths = new ArrayList<>(config.getPathsA());
+			allPaths.addAll(config.getPathsB());
+			allPaths.addAll(config.getClassPathA());
+			allPaths.addAll(config.getClassPathB());
+			allPaths.addAll(config.getSharedClassPath());
+			FileHashCache.hashAll(allPaths, InputFile.HashType.SHA256);
+
 			for (int i = 0; i < 2; i++) {
 				if ((i == 0) != inputsBeforeClassPath) {
 					// class path indexing
@@ -85,6 +93,7 @@ public final class ClassEnvironment implements ClassEnv {
 			classPathIndex.clear();
 			openFileSystems.forEach(Util::closeSilently);
 			openFileSystems.clear();
+			FileHashCache.save();
 		}
 
 		progressReceiver.accept(1);
@@ -345,13 +345,17 @@ public final class ClassInstance implements Matchable<ClassInstance> {
 		if (matchedClass == null) return false;
 
 		for (MethodInstance m : methods) {
-			if (m.hasPotentialMatch() && (!m.hasMatch() || recursive && !m.isFullyMatched(true))) {
+			MatchStatus status = m.getMatchStatus();
+
+			if (status.hasPotentialMatch() && (!status.hasMatch() || recursive && !status.isFullyMatched(true))) {
 				return false;
 			}
 		}
 
 		for (FieldInstance m : fields) {
-			if (m.hasPotentialMatch() && (!m.hasMatch() || recursive && !m.isFullyMatched(true))) {
+			MatchStatus status = m.getMatchStatus();
+
+			if (status.hasPotentialMatch() && (!status.hasMatch() || recursive && !status.isFullyMatched(true))) {
 				return false;
 			}
 		}
@@ -489,6 +493,15 @@ public final class ClassInstance implements Matchable<ClassInstance> {
 		return fieldIdx.get(id);
 	}
 
+	/**
+	 * Get the method of this class that is part of the same hierarchy as member, if any.
+	 */
+	public MethodInstance getHierarchyMember(MethodInstance member) {
+		MethodInstance ret = methodIdx.get(member.id); // methods only share a hierarchy if their ids are equal
+
+		return ret != null && ret.isHierarchyMember(member) ? ret : null;
+	}
+
 	public MethodInstance getMethod(String name, String desc) {
 		if (desc != null) {
 			return methodIdx.get(MethodInstance.getId(name, desc));
@@ -0,0 +1,218 @@
+package matcher.type;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import matcher.Log;
+import matcher.type.InputFile.HashType;
+
+/**
+ * Persistent cache for input file hashes, keyed by absolute path and validated against file size and modification time.
+ *
+ * <p>The cache is stored in {@code ~/.matcher/hash-cache.txt} unless overridden through the {@code matcher.hashCache}
+ * system property, setting it to an empty string disables persistence.
+ */
+public final class FileHashCache {
+	public static byte[] getHash(Path path, HashType type) throws IOException {
+		path = path.toAbsolutePath().normalize();
+		BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+		long size = attrs.size();
+		long mtime = attrs.lastModifiedTime().toMillis();
+
+		ensureLoaded();
+
+		Key key = new Key(path.toString(), type);
+		Entry entry = entries.get(key);
+
+		if (entry != null && entry.size == size && entry.mtime == mtime) {
+			return entry.hash;
+		}
+
+		byte[] ret = type.hash(path);
+		entries.put(key, new Entry(size, mtime, ret));
+		dirty = true;
+
+		return ret;
+	}
+
+	/**
+	 * Compute the hashes for all supplied files in parallel, populating the cache.
+	 */
+	public static void hashAll(Collection<Path> paths, HashType type) {
+		Set<Path> uniquePaths = new HashSet<>(paths);
+		if (uniquePaths.isEmpty()) return;
+
+		ensureLoaded();
+
+		uniquePaths.parallelStream().forEach(path -> {
+			try {
+				getHash(path, type);
+			} catch (NoSuchFileException e) {
+				// ignore, the caller will report it on access
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	public static void save() {
+		if (!dirty || cacheFile == null) return;
+
+		synchronized (FileHashCache.class) {
+			if (!dirty) return;
+			dirty = false;
+
+			try {
+				Files.createDirectories(cacheFile.toAbsolutePath().getParent());
+				Path tmpFile = cacheFile.resolveSibling(cacheFile.getFileName().toString()+".tmp");
+
+				try (Writer writer = Files.newBufferedWriter(tmpFile)) {
+					for (Map.Entry<Key, Entry> e : entries.entrySet()) {
+						Key key = e.getKey();
+						Entry entry = e.getValue();
+
+						writer.write(key.type.name());
+						writer.write('\t');
+						writer.write(Long.toString(entry.size));
+						writer.write('\t');
+						writer.write(Long.toString(entry.mtime));
+						writer.write('\t');
+						writer.write(toHex(entry.hash));
+						writer.write('\t');
+						writer.write(key.path);
+						writer.write('\n');
+					}
+				}
+
+				Files.move(tmpFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+			} catch (IOException e) {
+				Log.warn("can't save hash cache %s: %s", cacheFile, e);
+			}
+		}
+	}
+
+	private static void ensureLoaded() {
+		if (loaded) return;
+
+		synchronized (FileHashCache.class) {
+			if (loaded) return;
+
+			if (cacheFile != null && Files.isRegularFile(cacheFile)) {
+				try (BufferedReader reader = Files.newBufferedReader(cacheFile)) {
+					String line;
+
+					while ((line = reader.readLine()) != null) {
+						String[] parts = line.split("\t", 5);
+						if (parts.length != 5) continue;
+
+						try {
+							entries.put(new Key(parts[4], HashType.valueOf(parts[0])),
+									new Entry(Long.parseLong(parts[1]), Long.parseLong(parts[2]), fromHex(parts[3])));
+						} catch (IllegalArgumentException e) {
+							// skip invalid entry
+						}
+					}
+				} catch (IOException e) {
+					Log.warn("can't read hash cache %s: %s", cacheFile, e);
+				}
+			}
+
+			loaded = true;
+		}
+	}
+
+	private static String toHex(byte[] data) {
+		StringBuilder ret = new StringBuilder(data.length * 2);
+
+		for (byte b : data) {
+			ret.append(Character.forDigit((b >>> 4) & 0xf, 16));
+			ret.append(Character.forDigit(b & 0xf, 16));
+		}
+
+		return ret.toString();
+	}
+
+	private static byte[] fromHex(String str) {
+		if ((str.length() & 1) != 0) throw new IllegalArgumentException("invalid hex string length");
+
+		byte[] ret = new byte[str.length() / 2];
+
+		for (int i = 0; i < ret.length; i++) {
+			int hi = Character.digit(str.charAt(i * 2), 16);
+			int lo = Character.digit(str.charAt(i * 2 + 1), 16);
+			if (hi < 0 || lo < 0) throw new IllegalArgumentException("invalid hex char");
+
+			ret[i] = (byte) (hi << 4 | lo);
+		}
+
+		return ret;
+	}
+
+	private static Path getCacheFile() {
+		String value = System.getProperty("matcher.hashCache");
+
+		if (value == null) {
+			return Paths.get(System.getProperty("user.home"), ".matcher", "hash-cache.txt");
+		} else if (value.isEmpty()) {
+			return null;
+		} else {
+			return Paths.get(value);
+		}
+	}
+
+	private static class Key {
+		Key(String path, HashType type) {
+			this.path = path;
+			this.type = type;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) return false;
+
+			Key o = (Key) obj;
+
+			return type == o.type && path.equals(o.path);
+		}
+
+		@Override
+		public int hashCode() {
+			return path.hashCode() * 31 + type.ordinal();
+		}
+
+		final String path;
+		final HashType type;
+	}
+
+	private static class Entry {
+		Entry(long size, long mtime, byte[] hash) {
+			this.size = size;
+			this.mtime = mtime;
+			this.hash = hash;
+		}
+
+		final long size;
+		final long mtime;
+		final byte[] hash;
+	}
+
+	private FileHashCache() { }
+
+	private static final Path cacheFile = getCacheFile();
+	private static final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+	private static volatile boolean loaded;
+	private static volatile boolean dirty;
+}
@@ -0,0 +1,128 @@
+package matcher.type;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the regular files below an input directory by file name, used to resolve {@link InputFile}s without
+ * walking and hashing the whole directory tree for every input.
+ *
+ * <p>Indexes are kept for the whole session and only rebuilt through {@link #refresh}, which callers do at most once
+ * per batch of lookups if a file can't be found. Hashes are only computed for candidates with matching name and size
+ * (through {@link FileHashCache}).
+ */
+public final class InputDirIndex {
+	public static InputDirIndex get(Path dir) throws IOException {
+		dir = dir.toAbsolutePath().normalize();
+
+		synchronized (indices) {
+			InputDirIndex ret = indices.get(dir);
+
+			if (ret == null) {
+				ret = new InputDirIndex(dir);
+				ret.build();
+				indices.put(dir, ret);
+			}
+
+			return ret;
+		}
+	}
+
+	private InputDirIndex(Path dir) {
+		this.dir = dir;
+	}
+
+	/**
+	 * Get the System.nanoTime() of the last index build.
+	 */
+	public synchronized long getBuildTime() {
+		return buildTime;
+	}
+
+	/**
+	 * Rebuild the index from the current directory tree.
+	 */
+	public synchronized void refresh() throws IOException {
+		build();
+	}
+
+	/**
+	 * Find the first indexed file in the directory that matches inputFile.
+	 *
+	 * @return matching file or null if there is none
+	 */
+	public synchronized Path find(InputFile inputFile) throws IOException {
+		List<Entry> candidates;
+
+		if (inputFile.fileName != null) {
+			candidates = byName.getOrDefault(inputFile.fileName, Collections.emptyList());
+		} else {
+			candidates = allEntries;
+		}
+
+		for (Entry entry : candidates) {
+			if (inputFile.size >= 0 && entry.size != inputFile.size) continue;
+
+			try {
+				if (inputFile.equals(entry.path)) return entry.path;
+			} catch (UncheckedIOException e) {
+				if (!(e.getCause() instanceof NoSuchFileException)) throw e.getCause();
+			}
+		}
+
+		return null;
+	}
+
+	private void build() throws IOException {
+		Map<String, List<Entry>> byName = new HashMap<>();
+		List<Entry> allEntries = new ArrayList<>();
+
+		Files.walkFileTree(dir, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				if (attrs.isRegularFile()) {
+					Entry entry = new Entry(file, attrs.size());
+
+					byName.computeIfAbsent(InputFile.getSanitizedFileName(file), ignore -> new ArrayList<>(1)).add(entry);
+					allEntries.add(entry);
+				}
+
+				return FileVisitResult.CONTINUE;
+			}
+		});
+
+		this.byName = byName;
+		this.allEntries = allEntries;
+		this.buildTime = System.nanoTime();
+	}
+
+	private static class Entry {
+		Entry(Path path, long size) {
+			this.path = path;
+			this.size = size;
+		}
+
+		final Path path;
+		final long size;
+	}
+
+	private static final Map<Path, InputDirIndex> indices = new HashMap<>();
+
+	private final Path dir;
+	private Map<String, List<Entry>> byName;
+	private List<Entry> allEntries;
+	private long buildTime;
+}
@@ -18,7 +18,7 @@ public class InputFile {
 			this.path = path;
 			this.fileName = getSanitizedFileName(path);
 			this.size = Files.size(path);
-			this.hash = HashType.SHA256.hash(path);
+			this.hash = FileHashCache.getHash(path, HashType.SHA256);
 			this.hashType = HashType.SHA256;
 			this.pathHint = path;
 		} catch (IOException e) {
@@ -66,7 +66,7 @@ public class InputFile {
 			if (fileName != null && !getSanitizedFileName(path).equals(fileName)) return false;
 			if (size != -1 && Files.size(path) != size) return false;
 
-			return hash == null || Arrays.equals(hash, hashType.hash(path));
+			return hash == null || Arrays.equals(hash, FileHashCache.getHash(path, hashType));
 		} catch (IOException e) {
 			throw new UncheckedIOException(e);
 		}
@@ -107,7 +107,7 @@ public class InputFile {
 		}
 	}
 
-	private static String getSanitizedFileName(Path path) {
+	static String getSanitizedFileName(Path path) {
 		return path.getFileName().toString().replace('\n', ' ');
 	}
 
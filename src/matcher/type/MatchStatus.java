@@ -0,0 +1,44 @@
+package matcher.type;
+
+/**
+ * Summary of an element's match state, in ascending sort order.
+ */
+public enum MatchStatus {
+	UNMATCHED,
+	PARTIALLY_MATCHED,
+	FULLY_MATCHED_SHALLOW,
+	FULLY_MATCHED,
+	/**
+	 * No match and no potential match candidate, e.g. due to being unmatchable.
+	 */
+	NO_POTENTIAL_MATCH;
+
+	public boolean hasPotentialMatch() {
+		return this != NO_POTENTIAL_MATCH;
+	}
+
+	public boolean hasMatch() {
+		return this != UNMATCHED && this != NO_POTENTIAL_MATCH;
+	}
+
+	public boolean isFullyMatched(boolean recursive) {
+		return this == FULLY_MATCHED || !recursive && this == FULLY_MATCHED_SHALLOW;
+	}
+
+	/**
+	 * Determine the status of m directly, {@link Matchable#getMatchStatus()} should be used instead.
+	 */
+	public static MatchStatus compute(Matchable<?> m) {
+		if (!m.hasPotentialMatch()) {
+			return NO_POTENTIAL_MATCH;
+		} else if (!m.hasMatch()) {
+			return UNMATCHED;
+		} else if (!m.isFullyMatched(false)) {
+			return PARTIALLY_MATCHED;
+		} else if (!m.isFullyMatched(true)) {
+			return FULLY_MATCHED_SHALLOW;
+		} else {
+			return FULLY_MATCHED;
+		}
+	}
+}
@@ -36,6 +36,14 @@ public interface Matchable<T extends Matchable<T>> {
 
 	T getMatch();
 	boolean isFullyMatched(boolean recursive);
+
+	/**
+	 * Get the match status summary, cached until the match state changes.
+	 */
+	default MatchStatus getMatchStatus() {
+		return getEnv().getGlobal().getCache().getMatchStatus(this);
+	}
+
 	float getSimilarity();
 	boolean isNameObfuscated();
 }
\ No newline at end of file
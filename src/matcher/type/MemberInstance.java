@@ -197,6 +197,15 @@ public abstract class MemberInstance<T extends MemberInstance<T>> implements Mat
 		return hierarchyData.getMembers();
 	}
 
+	/**
+	 * Determine whether other is part of the same hierarchy, equivalent to getAllHierarchyMembers().contains(other).
+	 */
+	public boolean isHierarchyMember(T other) {
+		assert hierarchyData != null; // only available for input classes
+
+		return other.hierarchyData == hierarchyData;
+	}
+
 	@Override
 	public boolean hasLocalTmpName() {
 		return hierarchyData != null && hierarchyData.tmpName != null;